@@ -0,0 +1,63 @@
+// Precomputed attack tables for the bitboard move generator.
+// Leaper attacks are looked up per square; sliding attacks come from the Magic tables.
+public final class Attacks {
+    public static final long[] KNIGHT = new long[64];
+    public static final long[] KING = new long[64];
+    public static final long[][] PAWN = new long[2][64]; // capture squares, indexed [colour][square]
+    // For two squares on a shared rank, file or diagonal: the squares strictly between them, and the
+    // whole line through both. Empty for squares that aren't lined up.
+    public static final long[][] BETWEEN = new long[64][64];
+    public static final long[][] LINE = new long[64][64];
+
+    private static final int[][] KNIGHT_STEPS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+    private static final int[][] KING_STEPS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT[square] = leaperAttacks(square, KNIGHT_STEPS);
+            KING[square] = leaperAttacks(square, KING_STEPS);
+            PAWN[Bitboards.WHITE][square] = leaperAttacks(square, new int[][] {{1, -1}, {1, 1}});
+            PAWN[Bitboards.BLACK][square] = leaperAttacks(square, new int[][] {{-1, -1}, {-1, 1}});
+        }
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                if (from == to) continue;
+                long ends = Bitboards.bit(from) | Bitboards.bit(to);
+                if ((rook(from, 0) & Bitboards.bit(to)) != 0) {
+                    BETWEEN[from][to] = rook(from, Bitboards.bit(to)) & rook(to, Bitboards.bit(from));
+                    LINE[from][to] = (rook(from, 0) & rook(to, 0)) | ends;
+                } else if ((bishop(from, 0) & Bitboards.bit(to)) != 0) {
+                    BETWEEN[from][to] = bishop(from, Bitboards.bit(to)) & bishop(to, Bitboards.bit(from));
+                    LINE[from][to] = (bishop(from, 0) & bishop(to, 0)) | ends;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    private static long leaperAttacks(int square, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int row = Bitboards.row(square) + step[0];
+            int col = Bitboards.col(square) + step[1];
+            if (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                attacks |= Bitboards.bit(Bitboards.square(row, col));
+            }
+        }
+        return attacks;
+    }
+
+    public static long rook(int square, long occupied) {
+        return Magic.rook(square, occupied);
+    }
+
+    public static long bishop(int square, long occupied) {
+        return Magic.bishop(square, occupied);
+    }
+
+    public static long queen(int square, long occupied) {
+        return Magic.queen(square, occupied);
+    }
+}
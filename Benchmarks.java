@@ -0,0 +1,167 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+// Throughput and allocation benchmarks for the engine's hot paths. Each benchmark is warmed up, then
+// run for several timed iterations; the report gives operations per second with their spread and
+// the bytes allocated per operation, measured by the JVM's per-thread allocation counter.
+//
+//   java Benchmarks [--warmup <n>] [--iterations <n>] [--time <ms>] [name filter]
+public class Benchmarks {
+    private static final String[] MIDDLEGAMES = {
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+    private static final String[] ENDGAMES = {
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "8/5pk1/6p1/8/3R4/6P1/5PK1/3r4 w - - 0 40"
+    };
+    private static final String[] TACTICAL = {
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"
+    };
+
+    // Results feed this so the JIT cannot drop the work as dead code
+    private static volatile long sink;
+
+    private static int warmupIterations = 3;
+    private static int measuredIterations = 5;
+    private static long iterationMillis = 1000;
+    private static String filter = "";
+
+    private interface Operation {
+        long run();
+    }
+
+    public static void main(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--warmup": warmupIterations = Integer.parseInt(args[++i]); break;
+                case "--iterations": measuredIterations = Integer.parseInt(args[++i]); break;
+                case "--time": iterationMillis = Long.parseLong(args[++i]); break;
+                default: filter = args[i]; break;
+            }
+        }
+
+        System.out.printf("%-36s %14s %12s %12s%n", "Benchmark", "ops/s", "error", "B/op");
+        String[][] groups = {MIDDLEGAMES, ENDGAMES, TACTICAL};
+        String[] groupNames = {"middlegame", "endgame", "tactical"};
+        for (int g = 0; g < groups.length; g++) {
+            ChessBoard[] boards = load(groups[g]);
+            benchmarkMoveGeneration(groupNames[g], boards);
+            benchmarkMakeUndo(groupNames[g], boards);
+            benchmarkEvaluate(groupNames[g], boards);
+            benchmarkSearch(groupNames[g], boards);
+        }
+    }
+
+    private static ChessBoard[] load(String[] fens) {
+        ChessBoard[] boards = new ChessBoard[fens.length];
+        for (int i = 0; i < fens.length; i++) {
+            boards[i] = new ChessBoard(fens[i]);
+        }
+        return boards;
+    }
+
+    // One operation generates the pseudo-legal moves of one position, cycling through the group
+    private static void benchmarkMoveGeneration(String group, ChessBoard[] boards) {
+        int[] next = {0};
+        run("getPossibleMoves." + group, () -> {
+            ChessBoard board = boards[next[0]++ % boards.length];
+            return board.getPossibleMoves(board.getSideToMove()).size();
+        });
+    }
+
+    // One operation plays one legal move through the GUI path and takes it back
+    private static void benchmarkMakeUndo(String group, ChessBoard[] boards) {
+        List<ChessBoard> positions = new ArrayList<>();
+        List<Move> moves = new ArrayList<>();
+        for (ChessBoard board : boards) {
+            for (Move move : board.getLegalMoves(board.getSideToMove())) {
+                positions.add(board);
+                moves.add(move);
+            }
+        }
+        int[] next = {0};
+        run("movePiece/undoLastMove." + group, () -> {
+            int i = next[0]++ % moves.size();
+            ChessBoard board = positions.get(i);
+            Move move = moves.get(i);
+            board.movePiece(move.getStartRow(), move.getStartCol(), move.getEndRow(), move.getEndCol());
+            long hash = board.getHash();
+            board.undoLastMove();
+            return hash;
+        });
+    }
+
+    // Minimax.evaluate delegates straight to Evaluation, which is what is measured here
+    private static void benchmarkEvaluate(String group, ChessBoard[] boards) {
+        int[] next = {0};
+        run("evaluate." + group, () -> {
+            ChessBoard board = boards[next[0]++ % boards.length];
+            return Evaluation.evaluate(board, board.getSideToMove());
+        });
+    }
+
+    // One operation is a complete fixed-depth search from an empty transposition table
+    private static void benchmarkSearch(String group, ChessBoard[] boards) {
+        Minimax minimax = new Minimax();
+        int[] next = {0};
+        run("findBestMove." + group, () -> {
+            ChessBoard board = boards[next[0]++ % boards.length];
+            minimax.clearHash();
+            Move move = minimax.findBestMove(board, board.getSideToMove());
+            return move == null ? 0 : move.getEndRow() * 8 + move.getEndCol();
+        });
+    }
+
+    private static void run(String name, Operation operation) {
+        if (!name.contains(filter)) return;
+
+        for (int i = 0; i < warmupIterations; i++) {
+            iterate(operation);
+        }
+
+        double[] throughput = new double[measuredIterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long ops = iterate(operation);
+            long elapsed = System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytesBefore;
+            totalOps += ops;
+            throughput[i] = ops * 1e9 / elapsed;
+        }
+
+        double mean = 0;
+        for (double t : throughput) mean += t;
+        mean /= throughput.length;
+        double variance = 0;
+        for (double t : throughput) variance += (t - mean) * (t - mean);
+        double deviation = throughput.length > 1 ? Math.sqrt(variance / (throughput.length - 1)) : 0;
+
+        System.out.printf("%-36s %14.1f %12.1f %12.1f%n", name, mean, deviation, (double) totalBytes / totalOps);
+    }
+
+    // Runs the operation for one iteration's time, checking the clock every few calls
+    private static long iterate(Operation operation) {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000;
+        long ops = 0;
+        long result = 0;
+        do {
+            for (int i = 0; i < 16; i++) {
+                result += operation.run();
+            }
+            ops += 16;
+        } while (System.nanoTime() < deadline);
+        sink = result;
+        return ops;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -1,22 +1,18 @@
 public class Bishop extends Piece {
     public Bishop(Player player) {
-        super(player);
+        super(player, PieceType.BISHOP);
     }
 
     @Override
     public boolean isValidMove(int startX, int startY, int endX, int endY, ChessBoard board) {
         if (Math.abs(startX - endX) != Math.abs(startY - endY)) return false; // Must move diagonally
 
-        // Check for obstacles in the path of the move
-        int dx = (endX - startX > 0) ? 1 : -1;
-        int dy = (endY - startY > 0) ? 1 : -1;
+        // The path is clear when the target is in the bishop's attack set for the current occupancy
+        long attacks = Attacks.bishop(Bitboards.square(startX, startY), board.getOccupied());
+        if ((attacks & Bitboards.bit(Bitboards.square(endX, endY))) == 0) return false;
 
-        for (int i = 1; i < Math.abs(endX - startX); i++) {
-            if (board.getPieceAt(startX + i * dx, startY + i * dy) != null)
-                return false;
-        }
-        
-        return true; // Valid move
+        Piece target = board.getPieceAt(endX, endY);
+        return target == null || target.getPlayer() != player; // Valid move unless it captures our own piece
     }
 
     @Override
@@ -0,0 +1,38 @@
+// Helpers for the bitboard position model used by ChessBoard.
+// Squares are numbered row * 8 + col, so bit 0 is board[0][0] and bit 63 is board[7][7].
+public final class Bitboards {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    private Bitboards() {
+    }
+
+    public static int square(int row, int col) {
+        return (row << 3) | col;
+    }
+
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int color(Player player) {
+        return player == Player.WHITE ? WHITE : BLACK;
+    }
+
+    // Index into the 12 piece bitboards: colour * 6 + piece type
+    public static int pieceIndex(int color, PieceType type) {
+        return color * 6 + type.ordinal();
+    }
+
+    public static int pieceIndex(Player player, PieceType type) {
+        return pieceIndex(color(player), type);
+    }
+}
@@ -1,124 +1,879 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
 
 public class ChessBoard {
-    private Piece[][] board;
-    private Stack<Move> moveHistory;
+    // Shared piece instances, indexed like the bitboards (colour * 6 + piece type)
+    private static final Piece[] PIECES = {
+        new Pawn(Player.WHITE), new Knight(Player.WHITE), new Bishop(Player.WHITE),
+        new Rook(Player.WHITE), new Queen(Player.WHITE), new King(Player.WHITE),
+        new Pawn(Player.BLACK), new Knight(Player.BLACK), new Bishop(Player.BLACK),
+        new Rook(Player.BLACK), new Queen(Player.BLACK), new King(Player.BLACK)
+    };
+
+    private static final int WHITE_PAWN = 0, WHITE_KNIGHT = 1, WHITE_BISHOP = 2, WHITE_ROOK = 3, WHITE_QUEEN = 4, WHITE_KING = 5;
+    private static final int BLACK_PAWN = 6, BLACK_KNIGHT = 7, BLACK_BISHOP = 8, BLACK_ROOK = 9, BLACK_QUEEN = 10, BLACK_KING = 11;
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // FEN letters in piece index order
+    private static final String PIECE_LETTERS = "PNBRQKpnbrqk";
+
+    // Castling rights bits
+    public static final int WHITE_KINGSIDE = 1, WHITE_QUEENSIDE = 2, BLACK_KINGSIDE = 4, BLACK_QUEENSIDE = 8;
+
+    // Rights that survive a move touching each square: moving a king or rook, or capturing a rook, clears them
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[Bitboards.square(0, 4)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[Bitboards.square(0, 7)] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[Bitboards.square(0, 0)] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[Bitboards.square(7, 4)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[Bitboards.square(7, 7)] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[Bitboards.square(7, 0)] &= ~BLACK_QUEENSIDE;
+    }
+
+    private static final int[] PROMOTIONS = {
+        PieceType.QUEEN.ordinal(), PieceType.ROOK.ordinal(), PieceType.BISHOP.ordinal(), PieceType.KNIGHT.ordinal()
+    };
+
+    // One bitboard per piece type and colour, plus occupancy masks per colour and overall
+    private final long[] pieces;
+    private final long[] occupancy;
+    private long occupied;
+
+    private Player sideToMove;
+    private int castlingRights;
+    private int enPassantSquare; // square a pawn skipped over on the last move, or -1
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private long hash; // Zobrist key, updated incrementally
+
+    // Material plus piece-square sums per colour and the game phase, kept up to date like the hash
+    private final int[] midgameScore;
+    private final int[] endgameScore;
+    private int phase;
+
+    // Everything makeMove cannot recompute on undo, one entry per move played
+    private int[] moveHistory;
+    private int[] castlingHistory;
+    private int[] enPassantHistory;
+    private int[] halfmoveHistory;
+    private long[] hashHistory;
+    private int historySize;
+
+    private final int[] swapGains = new int[32]; // Scratch space for staticExchange
 
     public ChessBoard() {
-        this.board = new Piece[8][8];
-        this.moveHistory = new Stack<>();
+        this.pieces = new long[12];
+        this.occupancy = new long[2];
+        this.midgameScore = new int[2];
+        this.endgameScore = new int[2];
+        this.sideToMove = Player.WHITE;
+        this.castlingRights = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+        this.enPassantSquare = -1;
+        this.fullmoveNumber = 1;
+        this.hash = Zobrist.CASTLING[castlingRights];
+        allocateHistory(256);
         initializeBoard();
     }
 
+    // Independent copy of the position and its history, e.g. for a search thread
+    public ChessBoard(ChessBoard other) {
+        this.pieces = other.pieces.clone();
+        this.occupancy = other.occupancy.clone();
+        this.occupied = other.occupied;
+        this.sideToMove = other.sideToMove;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfmoveClock = other.halfmoveClock;
+        this.fullmoveNumber = other.fullmoveNumber;
+        this.hash = other.hash;
+        this.midgameScore = other.midgameScore.clone();
+        this.endgameScore = other.endgameScore.clone();
+        this.phase = other.phase;
+        this.moveHistory = other.moveHistory.clone();
+        this.castlingHistory = other.castlingHistory.clone();
+        this.enPassantHistory = other.enPassantHistory.clone();
+        this.halfmoveHistory = other.halfmoveHistory.clone();
+        this.hashHistory = other.hashHistory.clone();
+        this.historySize = other.historySize;
+    }
+
+    // Position from Forsyth-Edwards Notation; the halfmove clock and move number may be left off
+    public ChessBoard(String fen) {
+        this.pieces = new long[12];
+        this.occupancy = new long[2];
+        this.midgameScore = new int[2];
+        this.endgameScore = new int[2];
+        allocateHistory(256);
+
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) throw new IllegalArgumentException("Invalid FEN: " + fen);
+
+        int row = 7;
+        int col = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/') {
+                row--;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int piece = PIECE_LETTERS.indexOf(c);
+                if (piece < 0 || row < 0 || col > 7) throw new IllegalArgumentException("Invalid FEN: " + fen);
+                putPiece(piece, Bitboards.square(row, col++));
+            }
+        }
+
+        if (fields[1].equals("w")) {
+            this.sideToMove = Player.WHITE;
+        } else if (fields[1].equals("b")) {
+            this.sideToMove = Player.BLACK;
+            hash ^= Zobrist.SIDE_TO_MOVE;
+        } else {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        for (char c : fields[2].toCharArray()) {
+            int right = "KQkq".indexOf(c);
+            if (right >= 0) castlingRights |= 1 << right;
+            else if (c != '-') throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        hash ^= Zobrist.CASTLING[castlingRights];
+
+        this.enPassantSquare = fields[3].equals("-") ? -1 : parseSquare(fields[3]);
+        if (enPassantSquare >= 0) hash ^= Zobrist.EN_PASSANT_FILE[Bitboards.col(enPassantSquare)];
+
+        try {
+            this.halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            this.fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen, e);
+        }
+    }
+
+    // Square index from algebraic notation such as "e4"
+    public static int parseSquare(String name) {
+        if (name.length() != 2 || name.charAt(0) < 'a' || name.charAt(0) > 'h'
+                || name.charAt(1) < '1' || name.charAt(1) > '8') {
+            throw new IllegalArgumentException("Invalid square: " + name);
+        }
+        return Bitboards.square(name.charAt(1) - '1', name.charAt(0) - 'a');
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + Bitboards.col(square)) + (char) ('1' + Bitboards.row(square));
+    }
+
+    public String toFen() {
+        StringBuilder fen = new StringBuilder();
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int piece = pieceIndexAt(Bitboards.square(row, col));
+                if (piece < 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) fen.append(empty);
+                empty = 0;
+                fen.append(PIECE_LETTERS.charAt(piece));
+            }
+            if (empty > 0) fen.append(empty);
+            if (row > 0) fen.append('/');
+        }
+
+        fen.append(sideToMove == Player.WHITE ? " w " : " b ");
+        if (castlingRights == 0) fen.append('-');
+        for (int right = 0; right < 4; right++) {
+            if ((castlingRights & (1 << right)) != 0) fen.append("KQkq".charAt(right));
+        }
+        fen.append(' ').append(enPassantSquare >= 0 ? squareName(enPassantSquare) : "-");
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    // Standard algebraic notation of a legal move in this position, such as "Nbd7", "exd6", "e8=Q+" or "O-O"
+    public String toSan(int move) {
+        StringBuilder san = new StringBuilder();
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Move.movedPiece(move) % 6;
+        MoveList moves = new MoveList();
+        if (Move.isCastling(move)) {
+            san.append(Bitboards.col(to) > Bitboards.col(from) ? "O-O" : "O-O-O");
+        } else {
+            if (type == PieceType.PAWN.ordinal()) {
+                if (Move.isCapture(move)) san.append((char) ('a' + Bitboards.col(from)));
+            } else {
+                san.append(PIECE_LETTERS.charAt(type));
+                // Name the file, else the rank, else both, of a piece that another of its kind could replace
+                boolean ambiguous = false, sameCol = false, sameRow = false;
+                generateLegalMoves(sideToMove, moves);
+                for (int i = 0; i < moves.size(); i++) {
+                    int other = moves.get(i);
+                    if (Move.to(other) != to || Move.from(other) == from || Move.movedPiece(other) != Move.movedPiece(move)) continue;
+                    ambiguous = true;
+                    sameCol |= Bitboards.col(Move.from(other)) == Bitboards.col(from);
+                    sameRow |= Bitboards.row(Move.from(other)) == Bitboards.row(from);
+                }
+                if (ambiguous && (!sameCol || sameRow)) san.append((char) ('a' + Bitboards.col(from)));
+                if (ambiguous && sameCol) san.append((char) ('1' + Bitboards.row(from)));
+            }
+            if (Move.isCapture(move)) san.append('x');
+            san.append(squareName(to));
+            if (Move.promotion(move) != 0) san.append('=').append(PIECE_LETTERS.charAt(Move.promotion(move)));
+        }
+
+        makeMove(move);
+        if (isInCheck(sideToMove)) {
+            moves.clear();
+            generateLegalMoves(sideToMove, moves);
+            san.append(moves.isEmpty() ? '#' : '+');
+        }
+        unmakeMove();
+        return san.toString();
+    }
+
+    // The legal move written in SAN or long algebraic notation ("Nf3", "O-O", "e8=Q+", "g1f3", "e7e8q"),
+    // or 0 if there is none. Check marks, annotations and capture signs are optional.
+    public int parseMove(String text) {
+        String wanted = normalizeSan(text);
+        MoveList moves = new MoveList();
+        generateLegalMoves(sideToMove, moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (Move.toString(move).equals(text) || normalizeSan(toSan(move)).equals(wanted)) return move;
+        }
+        return 0;
+    }
+
+    private static String normalizeSan(String san) {
+        return san.replaceAll("e\\.p\\.|[+#!?=x ]", "").replace('0', 'O');
+    }
+
+    private void allocateHistory(int capacity) {
+        moveHistory = moveHistory == null ? new int[capacity] : Arrays.copyOf(moveHistory, capacity);
+        castlingHistory = castlingHistory == null ? new int[capacity] : Arrays.copyOf(castlingHistory, capacity);
+        enPassantHistory = enPassantHistory == null ? new int[capacity] : Arrays.copyOf(enPassantHistory, capacity);
+        halfmoveHistory = halfmoveHistory == null ? new int[capacity] : Arrays.copyOf(halfmoveHistory, capacity);
+        hashHistory = hashHistory == null ? new long[capacity] : Arrays.copyOf(hashHistory, capacity);
+    }
+
     private void initializeBoard() {
         // Initialize pieces for both players (white and black)
-        board[0][0] = new Rook(Player.WHITE);
-        board[0][7] = new Rook(Player.WHITE);
-        
-        board[7][0] = new Rook(Player.BLACK);
-        board[7][7] = new Rook(Player.BLACK);
+        PieceType[] backRank = {
+            PieceType.ROOK, PieceType.KNIGHT, PieceType.BISHOP, PieceType.QUEEN,
+            PieceType.KING, PieceType.BISHOP, PieceType.KNIGHT, PieceType.ROOK
+        };
 
-        // Place Knights
-        board[0][1] = new Knight(Player.WHITE);
-        board[0][6] = new Knight(Player.WHITE);
-        
-        board[7][1] = new Knight(Player.BLACK);
-        board[7][6] = new Knight(Player.BLACK);
+        for (int col = 0; col < 8; col++) {
+            putPiece(Bitboards.pieceIndex(Bitboards.WHITE, backRank[col]), Bitboards.square(0, col));
+            putPiece(Bitboards.pieceIndex(Bitboards.BLACK, backRank[col]), Bitboards.square(7, col));
 
-        // Place Bishops
-        board[0][2] = new Bishop(Player.WHITE);
-        board[0][5] = new Bishop(Player.WHITE);
-        
-        board[7][2] = new Bishop(Player.BLACK);
-        board[7][5] = new Bishop(Player.BLACK);
+            // Place Pawns
+            putPiece(Bitboards.pieceIndex(Bitboards.WHITE, PieceType.PAWN), Bitboards.square(1, col));
+            putPiece(Bitboards.pieceIndex(Bitboards.BLACK, PieceType.PAWN), Bitboards.square(6, col));
+        }
+    }
 
-        // Place Queens and Kings
-        board[0][3] = new Queen(Player.WHITE);
-        board[0][4] = new King(Player.WHITE);
-        
-        board[7][3] = new Queen(Player.BLACK);
-        board[7][4] = new King(Player.BLACK);
+    private void putPiece(int piece, int square) {
+        long bit = Bitboards.bit(square);
+        pieces[piece] |= bit;
+        occupancy[piece / 6] |= bit;
+        occupied |= bit;
+        hash ^= Zobrist.PIECE_SQUARE[piece][square];
+        midgameScore[piece / 6] += Evaluation.MIDGAME[piece][square];
+        endgameScore[piece / 6] += Evaluation.ENDGAME[piece][square];
+        phase += Evaluation.PHASE[piece];
+    }
+
+    private void removePiece(int piece, int square) {
+        long bit = Bitboards.bit(square);
+        pieces[piece] &= ~bit;
+        occupancy[piece / 6] &= ~bit;
+        occupied &= ~bit;
+        hash ^= Zobrist.PIECE_SQUARE[piece][square];
+        midgameScore[piece / 6] -= Evaluation.MIDGAME[piece][square];
+        endgameScore[piece / 6] -= Evaluation.ENDGAME[piece][square];
+        phase -= Evaluation.PHASE[piece];
+    }
 
-        // Place Pawns
-        for (int i = 0; i < 8; i++) {
-            board[1][i] = new Pawn(Player.WHITE);
-            board[6][i] = new Pawn(Player.BLACK);
+    // Returns the bitboard index of the piece on the square, or -1 if it is empty
+    private int pieceIndexAt(int square) {
+        long bit = Bitboards.bit(square);
+        if ((occupied & bit) == 0) return -1;
+
+        int first = (occupancy[Bitboards.WHITE] & bit) != 0 ? 0 : 6;
+        for (int piece = first; piece < first + 6; piece++) {
+            if ((pieces[piece] & bit) != 0) return piece;
         }
+        return -1;
+    }
+
+    // Shared Piece instance for a bitboard index, used when decoding packed moves
+    public static Piece pieceFor(int piece) {
+        return PIECES[piece];
     }
 
     public Piece getPieceAt(int row, int col) { 
-        return row >= 0 && row < 8 && col >= 0 && col < 8 ? board[row][col] : null; 
+        if (row < 0 || row >= 8 || col < 0 || col >= 8) return null;
+
+        int piece = pieceIndexAt(Bitboards.square(row, col));
+        return piece >= 0 ? PIECES[piece] : null;
+    }
+
+    public long getPieces(Player player, PieceType type) {
+        return pieces[Bitboards.pieceIndex(player, type)];
+    }
+
+    public long getOccupancy(Player player) {
+        return occupancy[Bitboards.color(player)];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    public Player getSideToMove() {
+        return sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public int getMidgameScore(Player player) {
+        return midgameScore[Bitboards.color(player)];
+    }
+
+    public int getEndgameScore(Player player) {
+        return endgameScore[Bitboards.color(player)];
+    }
+
+    public int getPhase() {
+        return phase;
+    }
+
+    // True if the current position already occurred since the last capture or pawn move
+    public boolean isRepetition() {
+        int earliest = Math.max(0, historySize - halfmoveClock);
+        for (int i = historySize - 2; i >= earliest; i -= 2) {
+            if (hashHistory[i] == hash) return true;
+        }
+        return false;
     }
 
     public void movePiece(int startRow, int startCol, int targetRow, int targetCol) {
-        Move move = new Move(startRow, startCol, targetRow, targetCol,
-            board[startRow][startCol], board[targetRow][targetCol]);
-        
-        // Move the piece
-        board[targetRow][targetCol] = board[startRow][startCol];
-        board[startRow][startCol] = null;
-        
-        // Record the move in history
-        moveHistory.push(move); 
+        int from = Bitboards.square(startRow, startCol);
+        int moved = pieceIndexAt(from);
+        if (moved < 0) return;
+
+        // A pawn reaching the last rank this way is promoted to a queen
+        int promotion = 0;
+        if (moved % 6 == PieceType.PAWN.ordinal() && (targetRow == 0 || targetRow == 7)) {
+            promotion = PieceType.QUEEN.ordinal();
+        }
+        makeMove(encodeMove(from, Bitboards.square(targetRow, targetCol), promotion));
     }
 
     public void undoLastMove() {
-        if (!moveHistory.isEmpty()) {
-            Move lastMove = moveHistory.pop();
-            // Restore the moved piece and captured piece
-            board[lastMove.getStartRow()][lastMove.getStartCol()] = lastMove.getMovedPiece();
-            board[lastMove.getEndRow()][lastMove.getEndCol()] = lastMove.getCapturedPiece();
+        if (canUndo()) {
+            unmakeMove();
         }
     }
 
     public boolean canUndo() {
-        return !moveHistory.isEmpty();
+        return historySize > 0;
+    }
+
+    // Packs a move given only its squares, working out the pieces and flags from this position
+    private int encodeMove(int from, int to, int promotion) {
+        int moved = pieceIndexAt(from);
+        int captured = pieceIndexAt(to);
+        int flags = Move.NONE;
+        if (moved % 6 == PieceType.PAWN.ordinal()) {
+            if (to == enPassantSquare) {
+                flags = Move.EN_PASSANT;
+                captured = (moved / 6 ^ 1) * 6 + PieceType.PAWN.ordinal();
+            } else if (Math.abs(to - from) == 16) {
+                flags = Move.DOUBLE_PUSH;
+            }
+        } else if (moved % 6 == PieceType.KING.ordinal() && Math.abs(to - from) == 2) {
+            flags = Move.CASTLING;
+        }
+        return Move.encode(from, to, promotion, moved, captured, flags);
+    }
+
+    public void makeMove(Move move) {
+        int encoded = move.getEncoded();
+        if (encoded == Move.NONE) {
+            int promotion = move.getPromotion() != null ? move.getPromotion().ordinal() : 0;
+            encoded = encodeMove(Bitboards.square(move.getStartRow(), move.getStartCol()),
+                Bitboards.square(move.getEndRow(), move.getEndCol()), promotion);
+        }
+        makeMove(encoded);
+    }
+
+    // Plays a packed move in place; everything needed to undo it is in the move and the history arrays
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int moved = Move.movedPiece(move);
+        int captured = Move.capturedPiece(move);
+        int color = moved / 6;
+        int type = moved % 6;
+
+        if (historySize == moveHistory.length) allocateHistory(historySize * 2);
+        moveHistory[historySize] = move;
+        castlingHistory[historySize] = castlingRights;
+        enPassantHistory[historySize] = enPassantSquare;
+        halfmoveHistory[historySize] = halfmoveClock;
+        hashHistory[historySize++] = hash;
+
+        if (captured >= 0) {
+            removePiece(captured, Move.isEnPassant(move) ? (color == Bitboards.WHITE ? to - 8 : to + 8) : to);
+        }
+        removePiece(moved, from);
+        putPiece(Move.promotion(move) != 0 ? color * 6 + Move.promotion(move) : moved, to);
+
+        // Castling is a two-square king move; bring the rook across as well
+        if (Move.isCastling(move)) {
+            int rook = color * 6 + PieceType.ROOK.ordinal();
+            removePiece(rook, to > from ? to + 1 : to - 2);
+            putPiece(rook, to > from ? to - 1 : to + 1);
+        }
+
+        if (enPassantSquare >= 0) hash ^= Zobrist.EN_PASSANT_FILE[Bitboards.col(enPassantSquare)];
+        enPassantSquare = Move.isDoublePush(move) ? (from + to) / 2 : -1;
+        if (enPassantSquare >= 0) hash ^= Zobrist.EN_PASSANT_FILE[Bitboards.col(enPassantSquare)];
+
+        hash ^= Zobrist.CASTLING[castlingRights];
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        hash ^= Zobrist.CASTLING[castlingRights];
+
+        halfmoveClock = type == PieceType.PAWN.ordinal() || captured >= 0 ? 0 : halfmoveClock + 1;
+        if (color == Bitboards.BLACK) fullmoveNumber++;
+        if (sideToMove != (color == Bitboards.WHITE ? Player.BLACK : Player.WHITE)) hash ^= Zobrist.SIDE_TO_MOVE;
+        sideToMove = color == Bitboards.WHITE ? Player.BLACK : Player.WHITE;
+    }
+
+    // Passes the turn, for null-move pruning. The halfmove clock restarts so repetitions are never
+    // matched across the pass.
+    public void makeNullMove() {
+        if (historySize == moveHistory.length) allocateHistory(historySize * 2);
+        moveHistory[historySize] = Move.NONE;
+        castlingHistory[historySize] = castlingRights;
+        enPassantHistory[historySize] = enPassantSquare;
+        halfmoveHistory[historySize] = halfmoveClock;
+        hashHistory[historySize++] = hash;
+
+        if (enPassantSquare >= 0) hash ^= Zobrist.EN_PASSANT_FILE[Bitboards.col(enPassantSquare)];
+        enPassantSquare = -1;
+        halfmoveClock = 0;
+        hash ^= Zobrist.SIDE_TO_MOVE;
+        sideToMove = sideToMove.getOpponent();
+    }
+
+    public void unmakeNullMove() {
+        historySize--;
+        enPassantSquare = enPassantHistory[historySize];
+        halfmoveClock = halfmoveHistory[historySize];
+        hash = hashHistory[historySize];
+        sideToMove = sideToMove.getOpponent();
+    }
+
+    public void unmakeMove() {
+        int move = moveHistory[--historySize];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int moved = Move.movedPiece(move);
+        int captured = Move.capturedPiece(move);
+        int color = moved / 6;
+
+        enPassantSquare = enPassantHistory[historySize];
+        castlingRights = castlingHistory[historySize];
+        halfmoveClock = halfmoveHistory[historySize];
+        if (color == Bitboards.BLACK) fullmoveNumber--;
+        sideToMove = color == Bitboards.WHITE ? Player.WHITE : Player.BLACK;
+
+        if (Move.isCastling(move)) {
+            int rook = color * 6 + PieceType.ROOK.ordinal();
+            removePiece(rook, to > from ? to - 1 : to + 1);
+            putPiece(rook, to > from ? to + 1 : to - 2);
+        }
+
+        removePiece(Move.promotion(move) != 0 ? color * 6 + Move.promotion(move) : moved, to);
+        putPiece(moved, from);
+        if (captured >= 0) {
+            putPiece(captured, Move.isEnPassant(move) ? (color == Bitboards.WHITE ? to - 8 : to + 8) : to);
+        }
+        hash = hashHistory[historySize];
     }
 
     public List<Move> getPossibleMoves(Player player) {
-        List<Move> moves = new ArrayList<>();
-        
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = board[row][col];
-                if (piece != null && piece.getPlayer() == player) {
-                    for (int targetRow = 0; targetRow < 8; targetRow++) {
-                        for (int targetCol = 0; targetCol < 8; targetCol++) {
-                            if (piece.isValidMove(row, col, targetRow, targetCol, this)) {
-                                moves.add(new Move(row, col, targetRow, targetCol, piece, getPieceAt(targetRow, targetCol)));
-                            } 
-                        } 
-                    } 
-                } 
-            } 
-        } 
-        return moves; 
+        MoveList moves = new MoveList();
+        generateMoves(player, moves);
+        return toMoves(moves);
+    }
+
+    public List<Move> getLegalMoves(Player player) {
+        MoveList moves = new MoveList();
+        generateLegalMoves(player, moves);
+        return toMoves(moves);
+    }
+
+    private static List<Move> toMoves(MoveList moves) {
+        List<Move> list = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            list.add(new Move(moves.get(i)));
+        }
+        return list;
+    }
+
+    // Appends the player's pseudo-legal moves to the list; some may leave the king in check
+    public void generateMoves(Player player, MoveList moves) {
+        generateMoves(player, moves, false, false);
     }
 
+    // Appends only the legal moves; nothing has to be tried on the board to find out
+    public void generateLegalMoves(Player player, MoveList moves) {
+        generateMoves(player, moves, false, true);
+    }
+
+    // Captures, en passant and promotions only, for the quiescence search
+    public void generateCaptures(Player player, MoveList moves) {
+        generateMoves(player, moves, true, false);
+    }
+
+    public void generateLegalCaptures(Player player, MoveList moves) {
+        generateMoves(player, moves, true, true);
+    }
+
+    // For legal moves the checkers and pinned pieces are found once up front. In double check only
+    // the king may move; in single check the other pieces must capture the checker or block, which
+    // is the target mask. A pinned piece stays on the line through its king and the pinner, and the
+    // king doesn't step onto an attacked square.
+    private void generateMoves(Player player, MoveList moves, boolean capturesOnly, boolean legalOnly) {
+        int color = Bitboards.color(player);
+        long enemy = occupancy[color ^ 1];
+        long empty = ~occupied;
+        long available = capturesOnly ? enemy : ~occupancy[color];
+        int first = color * 6;
+        int king = first + PieceType.KING.ordinal();
+
+        long targetMask = -1L;
+        long pinned = 0;
+        int kingSquare = Long.numberOfTrailingZeros(pieces[king]);
+        legalOnly &= pieces[king] != 0;
+        if (legalOnly) {
+            long checkers = attackersTo(kingSquare, occupied) & enemy;
+            if (checkers != 0) {
+                if ((checkers & (checkers - 1)) != 0) {
+                    addKingMoves(moves, king, kingSquare, available, true);
+                    return;
+                }
+                targetMask = checkers | Attacks.BETWEEN[kingSquare][Long.numberOfTrailingZeros(checkers)];
+            }
+            pinned = pinnedPieces(color, kingSquare);
+        }
+
+        // Pawns: single and double pushes onto empty squares, diagonal captures of enemy pieces
+        int pawn = first + PieceType.PAWN.ordinal();
+        int forward = color == Bitboards.WHITE ? 8 : -8;
+        int startRow = color == Bitboards.WHITE ? 1 : 6;
+        int lastRow = color == Bitboards.WHITE ? 7 : 0;
+        for (long from = pieces[pawn]; from != 0; from &= from - 1) {
+            int square = Long.numberOfTrailingZeros(from);
+            long allowed = allowedTargets(targetMask, pinned, kingSquare, square);
+            long targets = Attacks.PAWN[color][square] & enemy & allowed;
+            int push = square + forward;
+            boolean promotes = Bitboards.row(push) == lastRow;
+            if ((!capturesOnly || promotes) && (empty & Bitboards.bit(push)) != 0) {
+                targets |= Bitboards.bit(push) & allowed;
+                int doublePush = push + forward;
+                if (!capturesOnly && Bitboards.row(square) == startRow
+                        && (empty & allowed & Bitboards.bit(doublePush)) != 0) {
+                    moves.add(Move.encode(square, doublePush, 0, pawn, -1, Move.DOUBLE_PUSH));
+                }
+            }
+            if (promotes) {
+                addPromotions(moves, pawn, square, targets);
+            } else {
+                addMoves(moves, pawn, square, targets);
+            }
+        }
+
+        // En passant is only available to the side to move, right after the double push. Two pawns
+        // leave the capturing pawn's rank at once, so it is checked on the resulting occupancy.
+        if (player == sideToMove && enPassantSquare >= 0) {
+            int enemyPawn = (color ^ 1) * 6 + PieceType.PAWN.ordinal();
+            long capturedBit = Bitboards.bit(color == Bitboards.WHITE ? enPassantSquare - 8 : enPassantSquare + 8);
+            long attackers = Attacks.PAWN[color ^ 1][enPassantSquare] & pieces[pawn];
+            for (; attackers != 0; attackers &= attackers - 1) {
+                int square = Long.numberOfTrailingZeros(attackers);
+                if (legalOnly) {
+                    long after = (occupied ^ Bitboards.bit(square) ^ capturedBit) | Bitboards.bit(enPassantSquare);
+                    if ((attackersTo(kingSquare, after) & enemy & ~capturedBit) != 0) continue;
+                }
+                moves.add(Move.encode(square, enPassantSquare, 0, pawn, enemyPawn, Move.EN_PASSANT));
+            }
+        }
+
+        for (long from = pieces[first + PieceType.KNIGHT.ordinal()]; from != 0; from &= from - 1) {
+            int square = Long.numberOfTrailingZeros(from);
+            addMoves(moves, first + PieceType.KNIGHT.ordinal(), square,
+                Attacks.KNIGHT[square] & available & allowedTargets(targetMask, pinned, kingSquare, square));
+        }
+
+        for (long from = pieces[first + PieceType.BISHOP.ordinal()]; from != 0; from &= from - 1) {
+            int square = Long.numberOfTrailingZeros(from);
+            addMoves(moves, first + PieceType.BISHOP.ordinal(), square,
+                Attacks.bishop(square, occupied) & available & allowedTargets(targetMask, pinned, kingSquare, square));
+        }
+
+        for (long from = pieces[first + PieceType.ROOK.ordinal()]; from != 0; from &= from - 1) {
+            int square = Long.numberOfTrailingZeros(from);
+            addMoves(moves, first + PieceType.ROOK.ordinal(), square,
+                Attacks.rook(square, occupied) & available & allowedTargets(targetMask, pinned, kingSquare, square));
+        }
+
+        for (long from = pieces[first + PieceType.QUEEN.ordinal()]; from != 0; from &= from - 1) {
+            int square = Long.numberOfTrailingZeros(from);
+            addMoves(moves, first + PieceType.QUEEN.ordinal(), square,
+                Attacks.queen(square, occupied) & available & allowedTargets(targetMask, pinned, kingSquare, square));
+        }
+
+        for (long from = pieces[king]; from != 0; from &= from - 1) {
+            addKingMoves(moves, king, Long.numberOfTrailingZeros(from), available, legalOnly);
+        }
+
+        if (!capturesOnly) addCastlingMoves(moves, player);
+    }
+
+    // Squares a piece may move to: those resolving a check, and along the pin line if it is pinned
+    private static long allowedTargets(long targetMask, long pinned, int kingSquare, int square) {
+        return (pinned & Bitboards.bit(square)) != 0 ? targetMask & Attacks.LINE[kingSquare][square] : targetMask;
+    }
+
+    // The player's pieces that alone stand between their king and an enemy slider on the same line
+    private long pinnedPieces(int color, int kingSquare) {
+        int enemyFirst = (color ^ 1) * 6;
+        long queens = pieces[enemyFirst + PieceType.QUEEN.ordinal()];
+        long snipers = (Attacks.rook(kingSquare, 0) & (pieces[enemyFirst + PieceType.ROOK.ordinal()] | queens))
+            | (Attacks.bishop(kingSquare, 0) & (pieces[enemyFirst + PieceType.BISHOP.ordinal()] | queens));
+        long pinned = 0;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Attacks.BETWEEN[kingSquare][Long.numberOfTrailingZeros(snipers)] & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) pinned |= blockers & occupancy[color];
+        }
+        return pinned;
+    }
+
+    // With legalOnly, squares the enemy attacks are left out; the king is lifted off the board first
+    // so it can't hide behind itself from a slider it is moving away from
+    private void addKingMoves(MoveList moves, int king, int square, long available, boolean legalOnly) {
+        long targets = Attacks.KING[square] & available;
+        if (legalOnly) {
+            long enemy = occupancy[(king / 6) ^ 1];
+            long withoutKing = occupied ^ Bitboards.bit(square);
+            for (long candidates = targets; candidates != 0; candidates &= candidates - 1) {
+                int to = Long.numberOfTrailingZeros(candidates);
+                if ((attackersTo(to, withoutKing) & enemy) != 0) targets &= ~Bitboards.bit(to);
+            }
+        }
+        addMoves(moves, king, square, targets);
+    }
+
+    // Castling needs the right, empty squares between king and rook, and no attacked square on the king's path
+    private void addCastlingMoves(MoveList moves, Player player) {
+        int color = Bitboards.color(player);
+        int row = color == Bitboards.WHITE ? 0 : 7;
+        int kingSquare = Bitboards.square(row, 4);
+        int kingside = color == Bitboards.WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = color == Bitboards.WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        if ((castlingRights & (kingside | queenside)) == 0) return;
+        if (isSquareAttacked(kingSquare, player.getOpponent())) return;
+
+        int king = color * 6 + PieceType.KING.ordinal();
+        if ((castlingRights & kingside) != 0
+                && (occupied & (Bitboards.bit(kingSquare + 1) | Bitboards.bit(kingSquare + 2))) == 0
+                && !isSquareAttacked(kingSquare + 1, player.getOpponent())
+                && !isSquareAttacked(kingSquare + 2, player.getOpponent())) {
+            moves.add(Move.encode(kingSquare, kingSquare + 2, 0, king, -1, Move.CASTLING));
+        }
+        if ((castlingRights & queenside) != 0
+                && (occupied & (Bitboards.bit(kingSquare - 1) | Bitboards.bit(kingSquare - 2) | Bitboards.bit(kingSquare - 3))) == 0
+                && !isSquareAttacked(kingSquare - 1, player.getOpponent())
+                && !isSquareAttacked(kingSquare - 2, player.getOpponent())) {
+            moves.add(Move.encode(kingSquare, kingSquare - 2, 0, king, -1, Move.CASTLING));
+        }
+    }
+
+    private void addPromotions(MoveList moves, int piece, int from, long targets) {
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            int captured = pieceIndexAt(to);
+            for (int promotion : PROMOTIONS) {
+                moves.add(Move.encode(from, to, promotion, piece, captured, Move.NONE));
+            }
+        }
+    }
+
+    // Only capture targets need a piece lookup; the rest are known to be empty
+    private void addMoves(MoveList moves, int piece, int from, long targets) {
+        for (long captures = targets & occupied; captures != 0; captures &= captures - 1) {
+            int to = Long.numberOfTrailingZeros(captures);
+            moves.add(Move.encode(from, to, 0, piece, pieceIndexAt(to), Move.NONE));
+        }
+        for (long quiets = targets & ~occupied; quiets != 0; quiets &= quiets - 1) {
+            moves.add(Move.encode(from, Long.numberOfTrailingZeros(quiets), 0, piece, -1, Move.NONE));
+        }
+    }
+
+    // All pieces of either colour that attack the square, given the occupancy
+    public long attackersTo(int square, long occupied) {
+        long bishopsQueens = pieces[WHITE_BISHOP] | pieces[WHITE_QUEEN] | pieces[BLACK_BISHOP] | pieces[BLACK_QUEEN];
+        long rooksQueens = pieces[WHITE_ROOK] | pieces[WHITE_QUEEN] | pieces[BLACK_ROOK] | pieces[BLACK_QUEEN];
+        return (Attacks.PAWN[Bitboards.BLACK][square] & pieces[WHITE_PAWN])
+            | (Attacks.PAWN[Bitboards.WHITE][square] & pieces[BLACK_PAWN])
+            | (Attacks.KNIGHT[square] & (pieces[WHITE_KNIGHT] | pieces[BLACK_KNIGHT]))
+            | (Attacks.KING[square] & (pieces[WHITE_KING] | pieces[BLACK_KING]))
+            | (Attacks.bishop(square, occupied) & bishopsQueens)
+            | (Attacks.rook(square, occupied) & rooksQueens);
+    }
+
+    // Static exchange evaluation: the material the side making the move comes out with, in centipawns,
+    // if both sides keep recapturing on the target square with their least valuable attacker and
+    // either may stop when going on would lose. Sliders lined up behind an attacker join in once it
+    // has captured. Pins are ignored, and a king only recaptures if nothing can capture it back.
+    // A quiet move scores 0, or minus the piece's value if it can simply be taken.
+    public int staticExchange(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int side = Move.movedPiece(move) / 6;
+        long occupied = this.occupied & ~Bitboards.bit(from);
+        long bishopsQueens = pieces[WHITE_BISHOP] | pieces[WHITE_QUEEN] | pieces[BLACK_BISHOP] | pieces[BLACK_QUEEN];
+        long rooksQueens = pieces[WHITE_ROOK] | pieces[WHITE_QUEEN] | pieces[BLACK_ROOK] | pieces[BLACK_QUEEN];
+
+        int[] gains = swapGains;
+        gains[0] = Move.isCapture(move) ? Evaluation.PIECE_VALUES[Move.capturedPiece(move) % 6] : 0;
+        int onSquare = Evaluation.PIECE_VALUES[Move.movedPiece(move) % 6]; // Value of the piece standing on the target
+        if (Move.promotion(move) != 0) {
+            gains[0] += Evaluation.PIECE_VALUES[Move.promotion(move)] - Evaluation.PIECE_VALUES[PieceType.PAWN.ordinal()];
+            onSquare = Evaluation.PIECE_VALUES[Move.promotion(move)];
+        }
+        if (Move.isEnPassant(move)) {
+            occupied &= ~Bitboards.bit(side == Bitboards.WHITE ? to - 8 : to + 8);
+        }
+
+        long attackers = attackersTo(to, occupied) & occupied;
+        int depth = 0;
+        while (true) {
+            side ^= 1;
+            long own = attackers & occupancy[side];
+            if (own == 0) break;
+
+            int type = 0;
+            while ((own & pieces[side * 6 + type]) == 0) type++;
+            long attacker = Long.lowestOneBit(own & pieces[side * 6 + type]);
+
+            // Remove the attacker and let any slider behind it see the square
+            occupied &= ~attacker;
+            attackers |= (Attacks.bishop(to, occupied) & bishopsQueens) | (Attacks.rook(to, occupied) & rooksQueens);
+            attackers &= occupied;
+            if (type == PieceType.KING.ordinal() && (attackers & occupancy[side ^ 1]) != 0) break;
+
+            // This side loses whether it captures or stops, so it stops
+            if (Math.max(-gains[depth], onSquare - gains[depth]) < 0) break;
+            depth++;
+            gains[depth] = onSquare - gains[depth - 1];
+            onSquare = Evaluation.PIECE_VALUES[type];
+        }
+
+        // Each side takes the better of capturing and standing pat, from the last capture back
+        while (depth > 0) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+            depth--;
+        }
+        return gains[0];
+    }
+
+    public boolean isSquareAttacked(int square, Player attacker) {
+        return (attackersTo(square, occupied) & occupancy[Bitboards.color(attacker)]) != 0;
+    }
+
+    public boolean isInCheck(Player player) {
+        long king = pieces[Bitboards.pieceIndex(player, PieceType.KING)];
+        return king != 0 && isSquareAttacked(Long.numberOfTrailingZeros(king), player.getOpponent());
+    }
+
+    // Number of squares the player's knights, bishops, rooks and queens attack that they don't occupy
+    public int mobility(Player player) {
+        int color = Bitboards.color(player);
+        int first = color * 6;
+        long available = ~occupancy[color];
+        int mobility = 0;
+
+        for (long from = pieces[first + PieceType.KNIGHT.ordinal()]; from != 0; from &= from - 1) {
+            mobility += Long.bitCount(Attacks.KNIGHT[Long.numberOfTrailingZeros(from)] & available);
+        }
+        for (long from = pieces[first + PieceType.BISHOP.ordinal()]; from != 0; from &= from - 1) {
+            mobility += Long.bitCount(Attacks.bishop(Long.numberOfTrailingZeros(from), occupied) & available);
+        }
+        for (long from = pieces[first + PieceType.ROOK.ordinal()]; from != 0; from &= from - 1) {
+            mobility += Long.bitCount(Attacks.rook(Long.numberOfTrailingZeros(from), occupied) & available);
+        }
+        for (long from = pieces[first + PieceType.QUEEN.ordinal()]; from != 0; from &= from - 1) {
+            mobility += Long.bitCount(Attacks.queen(Long.numberOfTrailingZeros(from), occupied) & available);
+        }
+        return mobility;
+    }
+
+    // Checkmate or stalemate: the side to move has no legal move
     public boolean isGameOver() {
-        // Implement checkmate/stalemate detection logic here...
-        return false; 
+        MoveList moves = new MoveList();
+        generateLegalMoves(sideToMove, moves);
+        return moves.isEmpty();
+    }
+
+    public boolean isCheckmate() {
+        return isInCheck(sideToMove) && isGameOver();
+    }
+
+    public boolean isStalemate() {
+        return !isInCheck(sideToMove) && isGameOver();
     }
 
+    // Returns a copy of this position with the move played; the search uses makeMove/unmakeMove instead
     public ChessBoard simulateMove(Move move) {
-        ChessBoard simulatedBoard = new ChessBoard();
-        
-        // Logic to copy current state and apply the move...
-        
-        simulatedBoard.movePiece(move.getStartRow(), move.getStartCol(),
-                                  move.getEndRow(), move.getEndCol());
-        
+        ChessBoard simulatedBoard = new ChessBoard(this);
+        simulatedBoard.makeMove(move);
         return simulatedBoard; 
     }
 
-    // New method to get the current state of the chessboard
+    // Builds an 8x8 view of the position for ChessGUI; the engine itself works on the bitboards
     public Piece[][] getBoard() {
         Piece[][] copyOfBoard = new Piece[8][8];
         
-        for (int i = 0; i < 8; i++) {
-            System.arraycopy(board[i], 0, copyOfBoard[i], 0, 8);
+        for (long bits = occupied; bits != 0; bits &= bits - 1) {
+            int square = Long.numberOfTrailingZeros(bits);
+            copyOfBoard[Bitboards.row(square)][Bitboards.col(square)] = PIECES[pieceIndexAt(square)];
         }
         
         return copyOfBoard;
@@ -1,15 +1,51 @@
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ChessGUI extends JFrame {
      private ChessBoard chessBoard;
      private JButton[][] squares;
-     private Player currentPlayer;
+     private Player currentPlayer; // Side to move
+     private static final Player HUMAN=Player.WHITE;
+     private static final long BOT_TIME_MS=2000; // Thinking time per bot move
+     private static final Color SELECTED_COLOR=new Color(246,246,105);
+     private final Minimax minimax=new Minimax(); // Reused so the transposition table carries over between turns
+
+     // The bot searches here so the event dispatch thread stays free to repaint and handle clicks
+     private final ExecutorService searchExecutor=Executors.newSingleThreadExecutor(runnable->{
+          Thread thread=new Thread(runnable,"bot-search");
+          thread.setDaemon(true);
+          return thread;
+     });
+     private boolean botThinking;
+
+     // Pondering: while the human thinks, the bot searches the position after the reply it expects
+     private JCheckBox ponderBox;
+     private Future<?> ponderSearch;
+     private int ponderMove; // Expected reply, packed; 0 when no ponder search is wanted
+     private int ponderGeneration; // Tells a finished ponder search whether it is still current
+     private boolean ponderHit;
+     private Move ponderResult; // Set if the ponder search ended on its own before the human moved
+     private int selectedRow=-1,selectedCol=-1;
+     private JLabel statusLabel;
+     private JButton moveNowButton;
 
      public ChessGUI() {
           chessBoard=new ChessBoard();
           squares=new JButton[8][8];
           currentPlayer=Player.WHITE;
+          minimax.setSearchListener(new SearchListener(){
+               @Override
+               public void iterationCompleted(SearchStats stats){
+                    if(stats.getThread()==0) SwingUtilities.invokeLater(()->showProgress(stats));
+               }
+          });
+          loadOpeningBook();
+          loadTablebases();
 
           initializeUI();   
           setupGUI();   
@@ -20,6 +56,29 @@ public class ChessGUI extends JFrame {
           setLocationRelativeTo(null);   
      }
 
+     // Uses a Polyglot book when started with -Dchess.book=<file.bin>
+     private void loadOpeningBook(){
+          String bookFile=System.getProperty("chess.book");
+          if(bookFile==null) return;
+          try{
+              minimax.setOpeningBook(new PolyglotBook(Paths.get(bookFile)));
+          }catch(IOException e){
+              System.err.println("Opening book not loaded: "+e.getMessage());
+          }
+     }
+
+     // Uses Syzygy tables when started with -Dchess.syzygy=<directories, separated like a class path>
+     private void loadTablebases(){
+          String paths=System.getProperty("chess.syzygy");
+          if(paths==null) return;
+          SyzygyTablebase tablebase=new SyzygyTablebase(paths);
+          if(tablebase.getMaxPieces()==0){
+              System.err.println("No Syzygy tables found in "+paths);
+              return;
+          }
+          minimax.setTablebase(tablebase);
+     }
+
      private void initializeUI(){
           for(int row=0 ;row<8 ;row++){
               for(int col=0 ;col<8 ;col++){
@@ -32,6 +91,11 @@ public class ChessGUI extends JFrame {
                   button.addActionListener(e->handlePlayerMove(r,c));
               }
           }
+          statusLabel=new JLabel("Your move");
+          moveNowButton=new JButton("Move now");
+          moveNowButton.setEnabled(false);
+          moveNowButton.addActionListener(e->minimax.stop()); // The search returns its best move so far
+          ponderBox=new JCheckBox("Ponder",true);
      }
 
      private void setupGUI(){
@@ -42,34 +106,194 @@ public class ChessGUI extends JFrame {
               }
           }
           add(panel);   
+
+          JPanel statusPanel=new JPanel(new BorderLayout());
+          statusPanel.add(statusLabel,BorderLayout.CENTER);
+          JPanel buttons=new JPanel();
+          buttons.add(ponderBox);
+          buttons.add(moveNowButton);
+          statusPanel.add(buttons,BorderLayout.EAST);
+          add(statusPanel,BorderLayout.SOUTH);
           pack();   
           setVisible(true);   
      }
 
+     // First click picks up one of the human's pieces, the second puts it down on a legal square
      private void handlePlayerMove(int row,int col){
-          // Implement logic to handle player's selection of a piece and its movement.
-          
-          botTurn(); // After player's turn let bot make its turn.
+          if(botThinking || currentPlayer!=HUMAN) return;
+
+          Piece piece=chessBoard.getPieceAt(row,col);
+          if(piece!=null && piece.getPlayer()==HUMAN){
+              selectedRow=row;
+              selectedCol=col;
+              updateDisplay();
+              return;
+          }
+          if(selectedRow<0) return;
+
+          Move move=findLegalMove(selectedRow,selectedCol,row,col);
+          selectedRow=-1;
+          selectedCol=-1;
+          if(move==null){
+              updateDisplay();
+              return;
+          }
+
+          chessBoard.makeMove(move);
+          currentPlayer=currentPlayer.getOpponent();
+          updateDisplay();
+          if(checkGameOver()){
+              cancelPondering();
+          }else if(ponderMove!=0 && move.getEncoded()==ponderMove){
+              usePondering();
+          }else{
+              cancelPondering();
+              botTurn(); // After player's turn let bot make its turn.
+          }
+     }
+
+     // Pawns reaching the last rank become queens, the first promotion the generator lists
+     private Move findLegalMove(int startRow,int startCol,int endRow,int endCol){
+          for(Move move:chessBoard.getLegalMoves(currentPlayer)){
+              if(move.getStartRow()==startRow && move.getStartCol()==startCol
+                      && move.getEndRow()==endRow && move.getEndCol()==endCol){
+                  return move;
+              }
+          }
+          return null;
      }
 
      private void botTurn(){
-          Minimax minimax=new Minimax();
-          Move bestMove=minimax.findBestMove(chessBoard,currentPlayer.getOpponent());
-
-          if(bestMove!=null){   
-              chessBoard.movePiece(bestMove.getStartRow(),bestMove.getStartCol(),
-                                   bestMove.getEndRow(),bestMove.getEndCol());
-              updateDisplay();   
-              currentPlayer=currentPlayer.getOpponent();   
+          Player bot=currentPlayer;
+          ChessBoard position=new ChessBoard(chessBoard); // The search never touches the displayed board
+          botThinking=true;
+          moveNowButton.setEnabled(true);
+          statusLabel.setText("Thinking...");
+
+          searchExecutor.execute(()->{
+              Move bestMove=null;
+              try{
+                  bestMove=minimax.findBestMove(position,bot,BOT_TIME_MS);
+              }finally{
+                  Move move=bestMove;
+                  SwingUtilities.invokeLater(()->finishBotTurn(move));
+              }
+          });
+     }
+
+     // Back on the event dispatch thread once the search is over
+     private void finishBotTurn(Move bestMove){
+          botThinking=false;
+          moveNowButton.setEnabled(false);
+
+          if(bestMove!=null){
+              chessBoard.makeMove(bestMove);
+              currentPlayer=currentPlayer.getOpponent();
+              updateDisplay();
+              if(!checkGameOver()){
+                  statusLabel.setText("Your move");
+                  startPondering(bestMove);
+              }
+          }
+     }
+
+     // Searches the reply the last search expected, from the bot's side, until the human moves
+     private void startPondering(Move played){
+          SearchStats stats=minimax.getLastSearchStats();
+          if(!ponderBox.isSelected() || stats==null) return;
+          int[] line=stats.getPrincipalVariation();
+          if(line.length<2 || line[0]!=played.getEncoded()) return;
+
+          ChessBoard position=new ChessBoard(chessBoard);
+          position.makeMove(line[1]);
+          Player bot=currentPlayer.getOpponent();
+          int generation=++ponderGeneration;
+          ponderMove=line[1];
+          ponderHit=false;
+          ponderResult=null;
+          ponderSearch=searchExecutor.submit(()->{
+              Move bestMove=null;
+              try{
+                  bestMove=minimax.ponder(position,bot);
+              }finally{
+                  Move move=bestMove;
+                  SwingUtilities.invokeLater(()->finishPondering(generation,move));
+              }
+          });
+     }
+
+     // The human played the expected reply: the ponder search becomes the bot's search
+     private void usePondering(){
+          ponderMove=0;
+          botThinking=true;
+          moveNowButton.setEnabled(true);
+          statusLabel.setText("Thinking...");
+          if(ponderResult!=null){
+              finishBotTurn(ponderResult); // Already done, e.g. it found a forced mate
+          }else{
+              ponderHit=true;
+              minimax.ponderHit(BOT_TIME_MS);
+          }
+     }
+
+     // Any other move makes the ponder result useless; what it stored in the hash table stays
+     private void cancelPondering(){
+          if(ponderSearch!=null) ponderSearch.cancel(true); // An interrupt stops the search even if it hasn't started yet
+          ponderSearch=null;
+          ponderMove=0;
+          ponderHit=false;
+          ponderResult=null;
+     }
+
+     private void finishPondering(int generation,Move bestMove){
+          if(generation!=ponderGeneration) return;
+          ponderSearch=null;
+          if(ponderHit){
+              ponderHit=false;
+              finishBotTurn(bestMove);
+          }else if(ponderMove!=0){
+              ponderResult=bestMove;
+          }
+     }
+
+     // Shows checkmate or stalemate when the side to move has no legal move
+     private boolean checkGameOver(){
+          if(!chessBoard.isGameOver()) return false;
+
+          if(chessBoard.isCheckmate()){
+              statusLabel.setText("Checkmate, "+currentPlayer.getOpponent()+" wins");
+          }else{
+              statusLabel.setText("Stalemate");
+          }
+          return true;
+     }
+
+     private void showProgress(SearchStats stats){
+          if(!botThinking) return;
+          statusLabel.setText("Depth "+stats.getDepth()+"  Score "+formatScore(stats.getScore())
+                  +"  PV "+stats.getPrincipalVariationString());
+     }
+
+     // Pawns from the bot's point of view, the distance to a forced mate, or a tablebase result
+     private static String formatScore(int score){
+          if(Math.abs(score)>Minimax.MATE_BOUND){
+              int moves=(Minimax.MATE-Math.abs(score)+1)/2;
+              return (score>0?"mate in ":"mated in ")+moves;
+          }
+          if(Math.abs(score)>Minimax.TABLEBASE_BOUND){
+              return score>0?"tablebase win":"tablebase loss";
           }
+          return String.format("%+.2f",score/100.0);
      }
 
      private void updateDisplay(){
+          Piece[][] board=chessBoard.getBoard();
           for(int row=0 ;row<8 ;row++){
               for(int col=0 ;col<8 ;col++){
-                  Piece piece=chessBoard.getPieceAt(row,col);
+                  Piece piece=board[row][col];
 
                   squares[row][col].setText(piece!=null?piece.toString():"");
+                  squares[row][col].setBackground(row==selectedRow && col==selectedCol?SELECTED_COLOR:null);
               }
           }
      }
@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// One line of an Extended Position Description file: the first four FEN fields, optionally the two
+// clock fields, then operations such as
+//
+//   r1b1k2r/ppppnppp/2n2q2/2b5/3NP3/2P1B3/PP3PPP/RN1QKB1R w KQkq - bm Nb5; id "WAC.002";
+//
+// Operands are kept as written; bm (best move) and am (avoid move) are parsed into legal moves.
+public class EpdPosition {
+    private final String line;
+    private final ChessBoard board;
+    private final Map<String, String> operations;
+    private final int[] bestMoves;
+    private final int[] avoidMoves;
+
+    public EpdPosition(String line) {
+        this.line = line.trim();
+        String[] fields = this.line.split("\\s+");
+        if (fields.length < 4) throw new IllegalArgumentException("Invalid EPD: " + line);
+
+        // Skip the four position fields, and the clocks if the line is a full FEN
+        int fieldCount = 4;
+        if (fields.length >= 6 && fields[4].matches("\\d+") && fields[5].matches("\\d+")) fieldCount = 6;
+        int at = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            at = this.line.indexOf(fields[i], at) + fields[i].length();
+        }
+        this.board = new ChessBoard(String.join(" ", Arrays.copyOf(fields, fieldCount)));
+        this.operations = parseOperations(this.line.substring(at));
+        this.bestMoves = parseMoves("bm");
+        this.avoidMoves = parseMoves("am");
+    }
+
+    // Every position in the file, skipping blank lines and lines starting with #
+    public static List<EpdPosition> load(Path file) throws IOException {
+        List<EpdPosition> positions = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file)) {
+            lineNumber++;
+            if (line.isBlank() || line.trim().startsWith("#")) continue;
+            try {
+                positions.add(new EpdPosition(line));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return positions;
+    }
+
+    // A fresh copy, so callers can make moves on it
+    public ChessBoard getBoard() {
+        return new ChessBoard(board);
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    // The operand of an operation with the quotes removed, or null if the line doesn't have it
+    public String getOperation(String opcode) {
+        return operations.get(opcode);
+    }
+
+    public Map<String, String> getOperations() {
+        return Collections.unmodifiableMap(operations);
+    }
+
+    // The id operation, or the position itself if there is none
+    public String getId() {
+        String id = operations.get("id");
+        return id != null ? id : board.toFen();
+    }
+
+    public int[] getBestMoves() {
+        return bestMoves.clone();
+    }
+
+    public int[] getAvoidMoves() {
+        return avoidMoves.clone();
+    }
+
+    // Whether the move meets the bm and am operations; true if the line has neither
+    public boolean isSolution(int move) {
+        int code = move & Move.CODE_MASK;
+        for (int avoid : avoidMoves) {
+            if ((avoid & Move.CODE_MASK) == code) return false;
+        }
+        if (bestMoves.length == 0) return true;
+        for (int best : bestMoves) {
+            if ((best & Move.CODE_MASK) == code) return true;
+        }
+        return false;
+    }
+
+    // "opcode operand...;" repeated; a quoted operand may contain semicolons
+    private static Map<String, String> parseOperations(String text) {
+        Map<String, String> operations = new LinkedHashMap<>();
+        int i = 0;
+        while (i < text.length()) {
+            while (i < text.length() && (Character.isWhitespace(text.charAt(i)) || text.charAt(i) == ';')) i++;
+            int start = i;
+            while (i < text.length() && !Character.isWhitespace(text.charAt(i)) && text.charAt(i) != ';') i++;
+            if (start == i) break;
+            String opcode = text.substring(start, i);
+
+            StringBuilder operand = new StringBuilder();
+            boolean quoted = false;
+            for (; i < text.length() && (quoted || text.charAt(i) != ';'); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else {
+                    operand.append(c);
+                }
+            }
+            operations.put(opcode, operand.toString().trim());
+        }
+        return operations;
+    }
+
+    private int[] parseMoves(String opcode) {
+        String operand = operations.get(opcode);
+        if (operand == null || operand.isEmpty()) return new int[0];
+
+        String[] names = operand.split("\\s+");
+        int[] moves = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            moves[i] = board.parseMove(names[i]);
+            if (moves[i] == 0) throw new IllegalArgumentException("Illegal " + opcode + " move " + names[i] + ": " + line);
+        }
+        return moves;
+    }
+}
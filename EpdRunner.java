@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Analyses every position of an EPD file and scores the engine's move against the bm and am
+// operations. Positions are spread over a pool of workers, each with its own single-threaded
+// Minimax and hash table, and a line is printed for each position as soon as it is done.
+//
+//   java EpdRunner [--movetime <ms> | --depth <n>] [--workers <n>] [--hash <MB>] <file.epd>
+//
+// Time to solution is when the engine settled on a correct move for good: the start of the last
+// run of completed iterations that all chose a solution.
+public class EpdRunner {
+    private final long moveTime;
+    private final int depth;
+    private final int hashMb;
+    private final ThreadLocal<Minimax> engines;
+
+    private static final class Result {
+        final EpdPosition position;
+        final int move;
+        final boolean solved;
+        final long solutionMillis; // -1 if not solved
+        final int depth;
+        final long nodes;
+        final long elapsedMillis;
+
+        Result(EpdPosition position, int move, boolean solved, long solutionMillis, int depth, long nodes, long elapsedMillis) {
+            this.position = position;
+            this.move = move;
+            this.solved = solved;
+            this.solutionMillis = solutionMillis;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    public EpdRunner(long moveTime, int depth, int hashMb) {
+        this.moveTime = moveTime;
+        this.depth = depth;
+        this.hashMb = hashMb;
+        this.engines = ThreadLocal.withInitial(() -> {
+            Minimax minimax = new Minimax();
+            minimax.setHashSize(this.hashMb);
+            return minimax;
+        });
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long moveTime = 1000;
+        int depth = 0;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int hashMb = 16;
+        String file = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--movetime": moveTime = Long.parseLong(args[++i]); depth = 0; break;
+                case "--depth": depth = Integer.parseInt(args[++i]); moveTime = 0; break;
+                case "--workers": workers = Integer.parseInt(args[++i]); break;
+                case "--hash": hashMb = Integer.parseInt(args[++i]); break;
+                default: file = args[i]; break;
+            }
+        }
+        if (file == null) {
+            System.err.println("usage: java EpdRunner [--movetime <ms> | --depth <n>] [--workers <n>] [--hash <MB>] <file.epd>");
+            System.exit(2);
+        }
+
+        List<EpdPosition> positions = EpdPosition.load(Paths.get(file));
+        boolean allSolved = new EpdRunner(moveTime, depth, hashMb).run(positions, Math.max(1, workers));
+        System.exit(allSolved ? 0 : 1);
+    }
+
+    // Prints a line per position as it finishes, then the summary; true if every position was solved
+    public boolean run(List<EpdPosition> positions, int workers) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long start = System.nanoTime();
+        List<Future<Result>> futures = new ArrayList<>();
+        for (EpdPosition position : positions) {
+            futures.add(pool.submit(() -> {
+                Result result = analyse(position);
+                print(result);
+                return result;
+            }));
+        }
+
+        int solved = 0;
+        long nodes = 0;
+        long solutionMillis = 0;
+        int failures = 0;
+        for (Future<Result> future : futures) {
+            try {
+                Result result = future.get();
+                nodes += result.nodes;
+                if (result.solved) {
+                    solved++;
+                    solutionMillis += result.solutionMillis;
+                }
+            } catch (ExecutionException e) {
+                failures++;
+                System.err.println("Analysis failed: " + e.getCause());
+            }
+        }
+        pool.shutdown();
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        int total = positions.size();
+        System.out.printf("Solved %d of %d (%.1f%%)%s%n", solved, total, total > 0 ? 100.0 * solved / total : 0,
+            failures > 0 ? ", " + failures + " failed" : "");
+        if (solved > 0) System.out.printf("Average time to solution %d ms%n", solutionMillis / solved);
+        System.out.printf("%d positions in %d ms on %d workers: %.1f positions/s, %d nodes/s%n",
+            total, elapsed, workers, total * 1000.0 / elapsed, nodes * 1000 / elapsed);
+        return solved == total;
+    }
+
+    private Result analyse(EpdPosition position) {
+        Minimax minimax = engines.get();
+        minimax.clearHash(); // Every position starts cold, so times don't depend on the order
+        long[] solvedSince = {-1};
+        minimax.setSearchListener(new SearchListener() {
+            @Override
+            public void iterationCompleted(SearchStats stats) {
+                if (!position.isSolution(stats.getBestMove())) {
+                    solvedSince[0] = -1;
+                } else if (solvedSince[0] < 0) {
+                    solvedSince[0] = stats.getElapsedMillis();
+                }
+            }
+        });
+
+        ChessBoard board = position.getBoard();
+        long start = System.nanoTime();
+        Move best = depth > 0 ? minimax.findBestMove(board, board.getSideToMove(), depth, 0, 0)
+            : minimax.findBestMove(board, board.getSideToMove(), moveTime);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        int move = best != null ? best.getEncoded() : 0;
+        SearchStats stats = minimax.getLastSearchStats();
+        boolean solved = move != 0 && position.isSolution(move);
+        long solutionMillis = solved ? Math.max(0, solvedSince[0]) : -1;
+        return new Result(position, move, solved, solutionMillis, stats != null ? stats.getDepth() : 0,
+            stats != null ? stats.getNodes() : 0, elapsed);
+    }
+
+    // id, verdict, move played, expected moves, time to solution, depth, nodes
+    private static synchronized void print(Result result) {
+        EpdPosition position = result.position;
+        ChessBoard board = position.getBoard();
+        String expected = (sanList(board, "bm", position.getBestMoves()) + " "
+            + sanList(board, "am", position.getAvoidMoves())).trim();
+        System.out.printf("%-20s %-6s %-8s %-16s %8s %3d %12d %6d ms%n", position.getId(),
+            result.solved ? "solved" : "FAILED", result.move != 0 ? board.toSan(result.move) : "-", expected,
+            result.solved ? result.solutionMillis + " ms" : "-", result.depth, result.nodes, result.elapsedMillis);
+        System.out.flush();
+    }
+
+    private static String sanList(ChessBoard board, String opcode, int[] moves) {
+        if (moves.length == 0) return "";
+        StringBuilder list = new StringBuilder(opcode);
+        for (int move : moves) {
+            list.append(' ').append(board.toSan(move));
+        }
+        return list.toString();
+    }
+}
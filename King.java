@@ -1,6 +1,6 @@
 public class King extends Piece {
     public King(Player player){
-        super(player);
+        super(player, PieceType.KING);
     }
  
     @Override 
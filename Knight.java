@@ -1,6 +1,6 @@
 public class Knight extends Piece {
     public Knight(Player player) {
-        super(player);
+        super(player, PieceType.KNIGHT);
     }
 
     @Override
@@ -1,79 +1,737 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class Minimax {
     private static final int MAX_DEPTH = 3;
-    private static final String PAWN = null;
-    private static final String KNIGHT = null;
-    private static final String ROOK = null;
-    private static final String BISHOP = null;
-    private static final String KING = null;
-    private static final String QUEEN = null;
-    int bestValue = Integer.MIN_VALUE;
+    private static final int INFINITY = 1_000_000;
+    public static final int MATE = 100_000; // Mate scores are MATE minus the distance in plies
+    public static final int MATE_BOUND = MATE - 1000; // Scores beyond this are mate scores
+    private static final int DEFAULT_HASH_MB = 16;
+    private static final int NODE_PUBLISH_INTERVAL = 2048; // Power of two: nodes between publishing counts and polling limits
+    private static final int MAX_SEARCH_DEPTH = 64;
+    private static final int DELTA_MARGIN = 200; // Two pawns of slack for positional gains in delta pruning
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    private static final int NULL_MOVE_VERIFY_DEPTH = 8; // From here a null-move cutoff is confirmed by a real search
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVES = 3; // Moves searched at full depth before reductions start
+    // Leaf-node pruning margins in centipawns. Futility and razoring margins are indexed by remaining
+    // depth; a margin says how far the static score may be wrong about what a search would find.
+    private static final int[] FUTILITY_MARGINS = {0, 150, 300, 500}; // Quiet moves that can't lift the score to alpha
+    private static final int REVERSE_FUTILITY_MARGIN = 100; // Per ply: a static score this far above beta holds
+    private static final int REVERSE_FUTILITY_MAX_DEPTH = 6;
+    private static final int[] RAZOR_MARGINS = {0, 400, 800}; // Below alpha by this much, only captures are tried
+    private static final int PROBCUT_MARGIN = 200; // A capture beating beta by this much in a shallow search cuts the node
+    private static final int PROBCUT_MIN_DEPTH = 5;
+    private static final int PROBCUT_REDUCTION = 4;
+    private static final int SEE_QUIET_MARGIN = 60; // Per ply: quiet moves losing more than this on the target square are pruned
+    private static final int SEE_QUIET_MAX_DEPTH = 4;
+    private static final int ASPIRATION_MIN_DEPTH = 4; // Shallower iterations are cheap enough for a full window
+    private static final int ASPIRATION_WINDOW = 25; // Half-width of the first window around the last score, in centipawns
+    public static final int TABLEBASE_WIN = MATE_BOUND - MoveOrderer.MAX_PLY; // Won by the tablebases, short of a known mate
+    public static final int TABLEBASE_BOUND = TABLEBASE_WIN - MoveOrderer.MAX_PLY; // Scores beyond this are tablebase wins or mates
+
+    // Late-move reductions by remaining depth and move number: they grow with both, but slowly
+    private static final int[][] LMR_REDUCTIONS = new int[MAX_SEARCH_DEPTH][MoveList.CAPACITY];
+
+    static {
+        for (int depth = 1; depth < MAX_SEARCH_DEPTH; depth++) {
+            for (int moves = 1; moves < MoveList.CAPACITY; moves++) {
+                LMR_REDUCTIONS[depth][moves] = (int) (0.75 + Math.log(depth) * Math.log(moves) / 2.25);
+            }
+        }
+    }
+
+    // Limits shared by all search threads; only the main thread polls the clock and sets stopped
+    private volatile long deadline; // Moved by ponderHit while a search runs
+    private long nodeLimit;
+    private volatile boolean stopped;
+    private int completedDepth;
+    private long startTime;
+
+    private PolyglotBook book;
+    private SyzygyTablebase tablebase;
+    private SearchListener listener;
+    private SearchStats lastStats;
+
+    // Kept across calls, so later searches reuse what earlier ones found; shared by all threads
+    private final TranspositionTable table = new TranspositionTable(DEFAULT_HASH_MB);
+
+    private int threads = 1;
+    private ExecutorService helperPool;
+    private volatile SearchThread[] workers = new SearchThread[0];
+    private MoveOrderer[] orderers = {new MoveOrderer()}; // One per thread, kept between searches
+
+    public void setHashSize(int megabytes) {
+        table.resize(megabytes);
+    }
+
+    public void clearHash() {
+        table.clear();
+    }
+
+    // Number of threads for Lazy SMP: the calling thread plus threads - 1 helpers
+    public void setThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (threads == this.threads) return;
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+            helperPool = null;
+        }
+        this.threads = threads;
+        this.orderers = new MoveOrderer[threads];
+        for (int id = 0; id < threads; id++) {
+            orderers[id] = new MoveOrderer();
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
 
+    // Book moves are played without searching while the position is in the book; null for none
+    public void setOpeningBook(PolyglotBook book) {
+        this.book = book;
+    }
+
+    // Endgames within the tablebase's probe limit are played from the tables at the root and scored
+    // from them in the search; null for none
+    public void setTablebase(SyzygyTablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    // Told about every completed iteration and the end of each search; null for none
+    public void setSearchListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    // Searches to the fixed default depth (MAX_DEPTH plies below the root move) without a time limit
     public Move findBestMove(ChessBoard chessBoard, Player player) {
-        Move bestMove = null;
+        return search(chessBoard, player, MAX_DEPTH + 1, 0, 0);
+    }
 
-        for (Move move : chessBoard.getPossibleMoves(player)) {
-            ChessBoard simulatedBoard = chessBoard.simulateMove(move);
-            int value = minimax(simulatedBoard, MAX_DEPTH, Integer.MIN_VALUE, Integer.MAX_VALUE, false, player);
+    // Deepens one ply at a time until the time budget is spent
+    public Move findBestMove(ChessBoard chessBoard, Player player, long timeMillis) {
+        return search(chessBoard, player, MAX_SEARCH_DEPTH, timeMillis, 0);
+    }
 
-            if (value > bestValue) {
-                bestValue = value;
-                bestMove = move;
-            } 
-        } 
-        return bestMove; 
+    // As above, also stopping once the search has visited maxNodes positions (0 for no node limit)
+    public Move findBestMove(ChessBoard chessBoard, Player player, long timeMillis, long maxNodes) {
+        return search(chessBoard, player, MAX_SEARCH_DEPTH, timeMillis, maxNodes);
     }
 
-    private int minimax(ChessBoard chessBoard, int depth, int alpha, int beta, boolean maximizingPlayer, Player player) {
-        if (depth == 0 || chessBoard.isGameOver()) {
-            return evaluate(chessBoard); 
-        } 
+    // Any combination of limits: maxDepth in plies from the root, 0 for no time or node limit
+    public Move findBestMove(ChessBoard chessBoard, Player player, int maxDepth, long timeMillis, long maxNodes) {
+        return search(chessBoard, player, Math.min(maxDepth, MAX_SEARCH_DEPTH), timeMillis, maxNodes);
+    }
 
-        if (maximizingPlayer) {
-            int maxEval = Integer.MIN_VALUE;
+    // Searches the position with no limit until stop(), ponderHit() or an interrupt of the calling
+    // thread. Meant for the opponent's time, on the position after the reply the engine expects.
+    public Move ponder(ChessBoard chessBoard, Player player) {
+        return search(chessBoard, player, MAX_SEARCH_DEPTH, 0, 0);
+    }
 
-            for (Move move : chessBoard.getPossibleMoves(player)) {
-                ChessBoard simulatedBoard = chessBoard.simulateMove(move);
-                maxEval = Math.max(maxEval, minimax(simulatedBoard, depth - 1, alpha, beta, false, player));
-                alpha = Math.max(alpha, maxEval);
+    // As above, but never deeper than maxDepth plies nor past maxNodes positions (0 for no node
+    // limit); the limits hold before and after ponderHit()
+    public Move ponder(ChessBoard chessBoard, Player player, int maxDepth, long maxNodes) {
+        return search(chessBoard, player, Math.min(maxDepth, MAX_SEARCH_DEPTH), 0, maxNodes);
+    }
 
-                if (beta <= alpha) { break; } 
-            } 
-            return maxEval; 
-        } else {
-            int minEval = Integer.MAX_VALUE;
+    // The expected reply was played: the running ponder search goes on as a normal search with this
+    // much time left, keeping everything it has found so far
+    public void ponderHit(long timeMillis) {
+        deadline = System.nanoTime() + timeMillis * 1_000_000L;
+    }
+
+    // Ends the running search early; findBestMove then returns the best move of the last
+    // completed iteration, or the first root move if none completed
+    public void stop() {
+        stopped = true;
+    }
 
-            for (Move move : chessBoard.getPossibleMoves(player.getOpponent())) {
-                ChessBoard simulatedBoard = chessBoard.simulateMove(move);
-                minEval = Math.min(minEval, minimax(simulatedBoard, depth - 1, alpha, beta, true, player));
-                beta = Math.min(beta, minEval);
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    // Counters of the last search summed over all threads, or null before the first search
+    public SearchStats getLastSearchStats() {
+        return lastStats;
+    }
+
+    // Total positions visited by all threads in the last search. While the search runs, each thread's
+    // count is the one it last published, at most NODE_PUBLISH_INTERVAL nodes behind.
+    public long getNodes() {
+        long nodes = 0;
+        for (SearchThread worker : workers) {
+            nodes += worker.publishedNodes;
+        }
+        return nodes;
+    }
+
+    // Lazy SMP: every thread runs its own iterative deepening over the root on its own board copy.
+    // They share nothing but the transposition table, which is how they help each other.
+    private Move search(ChessBoard chessBoard, Player player, int maxDepth, long timeMillis, long maxNodes) {
+        deadline = timeMillis > 0 ? System.nanoTime() + timeMillis * 1_000_000L : Long.MAX_VALUE;
+        nodeLimit = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+        stopped = false;
+        completedDepth = 0;
+        startTime = System.nanoTime();
+        workers = new SearchThread[0]; // Until the threads start, getNodes counts nothing from the last search
+        SearchEvents.Search event = SearchEvents.beginSearch();
+
+        ChessBoard root = new ChessBoard(chessBoard);
+        int bookMove = book != null ? book.probe(root) : 0;
+        if (bookMove != 0) {
+            return finishSearch(event, new SearchStats(-1, 0, 0, bookMove, new int[] {bookMove}, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                System.nanoTime() - startTime));
+        }
+
+        // With DTZ tables the result and the way to reach it are known: their move keeps a win a win
+        // under the fifty-move rule, so it is played without a search
+        int tablebaseMove = tablebase != null ? tablebase.probeRoot(root) : 0;
+        if (tablebaseMove != 0) {
+            int wdl = tablebase.probeWdlWithClock(root);
+            int score = wdl != SyzygyTablebase.PROBE_FAILED ? tablebaseScore(wdl, 0) : 0;
+            return finishSearch(event, new SearchStats(-1, 0, score, tablebaseMove, new int[] {tablebaseMove}, 0, 0, 0, 0, 0, 0, 0, 0, 1,
+                System.nanoTime() - startTime));
+        }
+
+        MoveList moves = new MoveList();
+        root.generateLegalMoves(player, moves);
+        if (moves.isEmpty()) {
+            // Checkmate or stalemate: nothing to search, and no move to return
+            int score = root.isInCheck(player) ? -MATE : 0;
+            return finishSearch(event, new SearchStats(-1, 0, score, 0, new int[0], 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                System.nanoTime() - startTime));
+        }
+        // With WDL tables only, the search runs over the moves that keep the result; its own draw
+        // detection keeps it from shuffling a win away, and tablebase hits after captures show progress
+        if (tablebase != null) tablebase.filterRootMoves(root, moves);
+        orderHashMove(moves, TranspositionTable.move(table.probe(root.getHash())));
+
+        workers = new SearchThread[threads];
+        for (int id = 0; id < threads; id++) {
+            orderers[id].newSearch();
+            workers[id] = new SearchThread(id, root, moves, orderers[id]);
+        }
+
+        List<Future<?>> helpers = new ArrayList<>();
+        if (threads > 1) {
+            if (helperPool == null) {
+                helperPool = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                    Thread thread = new Thread(runnable, "minimax-helper");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            for (int id = 1; id < threads; id++) {
+                SearchThread helper = workers[id];
+                helpers.add(helperPool.submit(() -> helper.iterate(maxDepth)));
+            }
+        }
+
+        workers[0].iterate(maxDepth);
+        stopped = true; // The main thread is done; the helpers stop too
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (Exception e) {
+                // A failed helper only costs its contribution to the shared table
+            }
+        }
+
+        // Take the deepest completed result; on a tie the main thread wins
+        SearchThread best = workers[0];
+        for (SearchThread worker : workers) {
+            if (worker.completedDepth > best.completedDepth) best = worker;
+        }
+        completedDepth = best.completedDepth;
+
+        long nodes = 0, quiescenceNodes = 0, ttProbes = 0, ttHits = 0, cutoffs = 0, firstMoveCutoffs = 0, tablebaseHits = 0;
+        for (SearchThread worker : workers) {
+            nodes += worker.nodes;
+            quiescenceNodes += worker.quiescenceNodes;
+            ttProbes += worker.ttProbes;
+            ttHits += worker.ttHits;
+            cutoffs += worker.cutoffs;
+            firstMoveCutoffs += worker.firstMoveCutoffs;
+            tablebaseHits += worker.tablebaseHits;
+        }
+        return finishSearch(event, new SearchStats(-1, completedDepth, best.bestValue, best.bestMove, best.principalVariation.clone(),
+            nodes, quiescenceNodes, best.iterationNodes, best.previousIterationNodes, ttProbes, ttHits, cutoffs, firstMoveCutoffs,
+            tablebaseHits, System.nanoTime() - startTime));
+    }
+
+    // Every way out of search() ends here, so each search is reported exactly once and replaces the
+    // last search's stats, whether it was searched, taken from the book or tablebases, or had no move
+    private Move finishSearch(SearchEvents.Search event, SearchStats stats) {
+        lastStats = stats;
+        if (listener != null) listener.searchCompleted(stats);
+        SearchEvents.searchCompleted(event, stats, threads);
+        return stats.getBestMove() != 0 ? new Move(stats.getBestMove()) : null;
+    }
+
+    // Polled every few thousand nodes so the clock isn't read at every node. An interrupt stops the
+    // search too; unlike stop() it cannot be lost by arriving just before the search starts.
+    private void checkLimits() {
+        if (System.nanoTime() >= deadline || getNodes() >= nodeLimit || Thread.currentThread().isInterrupted()) {
+            stopped = true;
+        }
+    }
+
+    private final class SearchThread {
+        private final int id;
+        private final ChessBoard board;
+        private final MoveList rootMoves = new MoveList();
+        private final MoveOrderer orderer;
+        private final MoveList[] moveLists = new MoveList[MoveOrderer.MAX_PLY]; // One per ply, reused at every node
+        // Triangular PV table: row ply holds the best line found from that ply, pvLength[ply] is where it ends
+        private final int[][] pvTable = new int[MoveOrderer.MAX_PLY][MoveOrderer.MAX_PLY];
+        private final int[] pvLength = new int[MoveOrderer.MAX_PLY];
+        private long nodes;
+        private volatile long publishedNodes; // nodes as other threads may read it, updated every few thousand nodes
+        private long quiescenceNodes;
+        private long ttProbes;
+        private long ttHits;
+        private long cutoffs;
+        private long firstMoveCutoffs;
+        private long tablebaseHits;
+        private long iterationNodes;
+        private long previousIterationNodes;
+        private int bestMove;
+        private int bestValue = -INFINITY;
+        private int[] principalVariation;
+        private int completedDepth;
+
+        SearchThread(int id, ChessBoard root, MoveList moves, MoveOrderer orderer) {
+            this.id = id;
+            this.orderer = orderer;
+            this.board = new ChessBoard(root);
+            for (int i = 0; i < moves.size(); i++) {
+                rootMoves.add(moves.get(i));
+            }
+            for (int ply = 0; ply < moveLists.length; ply++) {
+                moveLists[ply] = new MoveList();
+            }
+            // Helpers try the root moves after the first in a different order, so they explore other subtrees
+            if (id > 0) {
+                Random random = new Random(id);
+                for (int i = rootMoves.size() - 1; i > 1; i--) {
+                    rootMoves.swap(i, 1 + random.nextInt(i));
+                }
+            }
+            // Until the first iteration completes, fall back to the hash move or the first legal move
+            this.bestMove = rootMoves.get(0);
+            this.principalVariation = new int[] {bestMove};
+        }
 
-                if (beta <= alpha) { break; } 
+        void iterate(int maxDepth) {
+            // Odd helpers search one ply deeper than the main thread at each step
+            int offset = id % 2;
+            for (int depth = 1 + offset; depth <= maxDepth; depth++) {
+                long nodesBefore = nodes;
+
+                // Aspiration window: expect a score close to the last iteration's. A result outside the
+                // window is only a bound, so the window is widened on that side and the depth searched again.
+                int delta = ASPIRATION_WINDOW;
+                int alpha = -INFINITY;
+                int beta = INFINITY;
+                if (depth >= ASPIRATION_MIN_DEPTH && Math.abs(bestValue) < MATE_BOUND) {
+                    alpha = bestValue - delta;
+                    beta = bestValue + delta;
+                }
+                int value;
+                while (true) {
+                    value = searchRoot(depth, alpha, beta);
+                    if (stopped) break;
+                    if (value <= alpha) {
+                        alpha = value < -MATE_BOUND ? -INFINITY : Math.max(-INFINITY, value - delta);
+                    } else if (value >= beta) {
+                        beta = value > MATE_BOUND ? INFINITY : Math.min(INFINITY, value + delta);
+                        rootMoves.moveToFront(rootMoves.indexOf(pvTable[0][0])); // The move that failed high goes first
+                    } else {
+                        break;
+                    }
+                    delta *= 2;
+                }
+
+                // An interrupted iteration is thrown away; the last completed one stands
+                if (stopped) break;
+                bestMove = pvTable[0][0];
+                bestValue = value;
+                principalVariation = Arrays.copyOf(pvTable[0], pvLength[0]);
+                completedDepth = depth;
+                table.store(board.getHash(), depth, TranspositionTable.EXACT, bestValue, bestMove);
+                previousIterationNodes = iterationNodes;
+                iterationNodes = nodes - nodesBefore;
+                report(depth);
+
+                // Search this iteration's best move first in the next one
+                rootMoves.moveToFront(rootMoves.indexOf(bestMove));
+
+                if (Math.abs(bestValue) > MATE_BOUND) break; // A forced mate won't change with more depth
+            }
+            publishedNodes = nodes;
+        }
+
+        // Principal variation search over the root moves: the first gets the full window, the rest a
+        // null window that only proves them no better, searched again in full if they turn out better.
+        // The best move is left in pvTable[0][0] if any move scored inside the window.
+        private int searchRoot(int depth, int alpha, int beta) {
+            pvLength[0] = 0;
+            int bestEval = -INFINITY;
+            for (int i = 0; i < rootMoves.size(); i++) {
+                int move = rootMoves.get(i);
+                board.makeMove(move);
+                int eval;
+                if (i == 0) {
+                    eval = -minimax(board, depth - 1, -beta, -alpha, 1, true);
+                } else {
+                    eval = -minimax(board, depth - 1, -alpha - 1, -alpha, 1, true);
+                    if (eval > alpha && eval < beta && !stopped) eval = -minimax(board, depth - 1, -beta, -alpha, 1, true);
+                }
+                board.unmakeMove();
+                if (stopped) break;
+
+                if (eval > bestEval) {
+                    bestEval = eval;
+                    if (eval > alpha) {
+                        alpha = eval;
+                        updatePrincipalVariation(0, move);
+                        if (alpha >= beta) break;
+                    }
+                }
+            }
+            return bestEval;
+        }
+
+        // Makes the node count visible to other threads; the main thread also polls the limits here
+        private void publishNodes() {
+            publishedNodes = nodes;
+            if (id == 0) checkLimits();
+        }
+
+        private void report(int depth) {
+            publishedNodes = nodes;
+            SearchStats stats = new SearchStats(id, depth, bestValue, bestMove,
+                principalVariation.clone(), nodes, quiescenceNodes,
+                iterationNodes, previousIterationNodes, ttProbes, ttHits, cutoffs, firstMoveCutoffs, tablebaseHits,
+                System.nanoTime() - startTime);
+            if (listener != null) listener.iterationCompleted(stats);
+            SearchEvents.iterationCompleted(stats);
+        }
+
+        // Negamax alpha-beta with principal variation search: scores are from the point of view of the
+        // side to move. Nodes searched with an open window are PV nodes; every other node only has to
+        // prove a bound. allowNull is false right after a null move, so no side passes twice in a row.
+        private int minimax(ChessBoard chessBoard, int depth, int alpha, int beta, int ply, boolean allowNull) {
+            pvLength[ply] = ply;
+            if ((++nodes & NODE_PUBLISH_INTERVAL - 1) == 0) publishNodes();
+            if (stopped) return 0;
+
+            Player player = chessBoard.getSideToMove();
+            if (chessBoard.getHalfmoveClock() >= 100 || chessBoard.isRepetition()) {
+                return 0; // Fifty-move rule or repetition
+            }
+            if (depth <= 0) {
+                return quiescence(chessBoard, alpha, beta, ply);
+            }
+
+            // A stored result that is deep enough and bounds the window ends the node right away, except
+            // in PV nodes, where it would cut the principal variation short
+            boolean pvNode = beta - alpha > 1;
+            long key = chessBoard.getHash();
+            long entry = table.probe(key);
+            int hashMove = 0;
+            ttProbes++;
+            if (entry != 0) {
+                ttHits++;
+                hashMove = TranspositionTable.move(entry);
+                if (!pvNode && TranspositionTable.depth(entry) >= depth) {
+                    int score = scoreFromTable(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                            || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+
+            // Right after a capture or pawn move the tables' result is exact, and it ends the node.
+            // Later in the same phase the fifty-move count could make a stored win a draw.
+            if (tablebase != null && chessBoard.getHalfmoveClock() == 0 && tablebase.canProbe(chessBoard)) {
+                int wdl = tablebase.probeWdl(chessBoard);
+                if (wdl != SyzygyTablebase.PROBE_FAILED) {
+                    tablebaseHits++;
+                    int score = tablebaseScore(wdl, ply);
+                    table.store(key, MAX_SEARCH_DEPTH, TranspositionTable.EXACT, scoreToTable(score, ply), 0);
+                    return score;
+                }
+            }
+
+            // Null-move pruning: if the opponent, given a free move, still can't hold a reduced search
+            // below beta, a real move would fail high too. Not when in check, where passing is illegal,
+            // nor with only pawns left, where zugzwang makes passing the best option; deep cutoffs
+            // are verified by a reduced search without the null move.
+            boolean inCheck = chessBoard.isInCheck(player);
+            int staticEval = inCheck ? -INFINITY : evaluate(chessBoard, player);
+
+            // Reverse futility pruning: a static score so far above beta that a shallow search won't
+            // bring it back down. Razoring: so far below alpha that only a capture could save the node,
+            // so the captures are all that gets searched.
+            if (!pvNode && !inCheck && Math.abs(beta) < TABLEBASE_BOUND) {
+                if (depth <= REVERSE_FUTILITY_MAX_DEPTH && staticEval - REVERSE_FUTILITY_MARGIN * depth >= beta) {
+                    return staticEval;
+                }
+                if (depth < RAZOR_MARGINS.length && staticEval + RAZOR_MARGINS[depth] <= alpha) {
+                    int eval = quiescence(chessBoard, alpha, beta, ply);
+                    if (stopped) return 0;
+                    if (eval <= alpha) return eval;
+                }
+            }
+
+            if (allowNull && !pvNode && !inCheck && depth >= NULL_MOVE_MIN_DEPTH && Math.abs(beta) < TABLEBASE_BOUND
+                    && hasPieces(chessBoard, player) && staticEval >= beta) {
+                int reduction = depth >= 7 ? 3 : 2;
+                chessBoard.makeNullMove();
+                int eval = -minimax(chessBoard, depth - 1 - reduction, -beta, -beta + 1, ply + 1, false);
+                chessBoard.unmakeNullMove();
+                if (stopped) return 0;
+                if (eval >= beta) {
+                    if (eval > TABLEBASE_BOUND) eval = beta; // A mate or tablebase win found by passing is not proven
+                    if (depth < NULL_MOVE_VERIFY_DEPTH) return eval;
+                    int verified = minimax(chessBoard, depth - 1 - reduction, beta - 1, beta, ply, false);
+                    if (stopped) return 0;
+                    if (verified >= beta) return eval;
+                }
+            }
+
+            // ProbCut: a capture that beats beta by a wide margin in a much shallower search will almost
+            // surely beat beta in the full one. A quiescence search screens each capture first.
+            if (!pvNode && !inCheck && depth >= PROBCUT_MIN_DEPTH && Math.abs(beta) < TABLEBASE_BOUND) {
+                int probCutBeta = beta + PROBCUT_MARGIN;
+                MoveList captures = moveLists[ply];
+                captures.clear();
+                chessBoard.generateLegalCaptures(player, captures);
+                orderer.order(chessBoard, captures, hashMove, ply);
+                for (int i = 0; i < captures.size(); i++) {
+                    int move = captures.get(i);
+                    if (staticEval + chessBoard.staticExchange(move) < probCutBeta) {
+                        continue; // The exchange doesn't win enough to reach the margin
+                    }
+                    chessBoard.makeMove(move);
+                    int eval = -quiescence(chessBoard, -probCutBeta, -probCutBeta + 1, ply + 1);
+                    if (eval >= probCutBeta && !stopped) {
+                        eval = -minimax(chessBoard, depth - PROBCUT_REDUCTION, -probCutBeta, -probCutBeta + 1, ply + 1, true);
+                    }
+                    chessBoard.unmakeMove();
+                    if (stopped) return 0;
+                    if (eval >= probCutBeta) {
+                        table.store(key, depth - PROBCUT_REDUCTION + 1, TranspositionTable.LOWER_BOUND, scoreToTable(eval, ply), move);
+                        return eval;
+                    }
+                }
+            }
+
+            // Futility pruning: at the frontier, quiet moves can't gain more than the margin for the
+            // remaining depth, so when that still leaves the score at or below alpha they are skipped
+            boolean futile = !inCheck && depth < FUTILITY_MARGINS.length && Math.abs(alpha) < TABLEBASE_BOUND
+                && staticEval + FUTILITY_MARGINS[depth] <= alpha;
+
+            int originalAlpha = alpha;
+            int bestEval = -INFINITY;
+            int bestMove = 0;
+            int legalMoves = 0;
+
+            // Only legal moves are generated, so no legal move at all means checkmate or stalemate
+            MoveList moves = moveLists[ply];
+            moves.clear();
+            chessBoard.generateLegalMoves(player, moves);
+            if (moves.isEmpty()) {
+                return inCheck ? -MATE + ply : 0;
+            }
+            orderer.order(chessBoard, moves, hashMove, ply);
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                // A quiet move to a square where the opponent simply wins the piece is pruned near the leaves
+                boolean losesExchange = !inCheck && legalMoves > 0 && depth <= SEE_QUIET_MAX_DEPTH && !Move.isTactical(move)
+                    && Math.abs(alpha) < TABLEBASE_BOUND && chessBoard.staticExchange(move) < -SEE_QUIET_MARGIN * depth;
+                chessBoard.makeMove(move);
+                legalMoves++;
+                boolean givesCheck = chessBoard.isInCheck(chessBoard.getSideToMove());
+
+                // The first legal move is always searched, so the node keeps a real score and mates are still seen
+                if (futile && legalMoves > 1 && !Move.isTactical(move) && !givesCheck) {
+                    chessBoard.unmakeMove();
+                    bestEval = Math.max(bestEval, staticEval + FUTILITY_MARGINS[depth]);
+                    continue;
+                }
+                if (losesExchange && !givesCheck) {
+                    chessBoard.unmakeMove();
+                    continue;
+                }
+
+                // Late-move reductions: quiet moves this far down the ordering rarely matter, so they
+                // get a shallower null-window search first and the full search only if they beat alpha
+                int reduction = 0;
+                if (depth >= LMR_MIN_DEPTH && legalMoves > LMR_MIN_MOVES && !inCheck && !Move.isTactical(move)
+                        && !orderer.isKiller(move, ply) && !givesCheck) {
+                    reduction = Math.min(depth - 2, LMR_REDUCTIONS[Math.min(depth, MAX_SEARCH_DEPTH - 1)][legalMoves]);
+                }
+                // The first move gets the full window; later ones a null window, reduced if they are late,
+                // then the full depth and finally the full window only while they keep beating alpha
+                int eval;
+                if (legalMoves == 1) {
+                    eval = -minimax(chessBoard, depth - 1, -beta, -alpha, ply + 1, true);
+                } else {
+                    eval = -minimax(chessBoard, depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, true);
+                    if (reduction > 0 && eval > alpha && !stopped) {
+                        eval = -minimax(chessBoard, depth - 1, -alpha - 1, -alpha, ply + 1, true);
+                    }
+                    if (eval > alpha && eval < beta && !stopped) {
+                        eval = -minimax(chessBoard, depth - 1, -beta, -alpha, ply + 1, true);
+                    }
+                }
+                chessBoard.unmakeMove();
+                if (stopped) return 0; // Unfinished subtree; the result is discarded
+
+                if (eval > bestEval) {
+                    bestEval = eval;
+                    bestMove = move;
+                    if (eval > alpha) {
+                        alpha = eval;
+                        updatePrincipalVariation(ply, move);
+                    }
+                }
+                if (beta <= alpha) {
+                    cutoffs++;
+                    if (legalMoves == 1) firstMoveCutoffs++;
+                    orderer.recordCutoff(move, depth, ply);
+                    break;
+                } 
             } 
-            return minEval; 
+
+            int bound = bestEval <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : bestEval >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            table.store(key, depth, bound, scoreToTable(bestEval, ply), bestMove);
+            return bestEval; 
         } 
-    } 
 
-    private int evaluate(ChessBoard chessBoard) {
-        int score = 0;
-        for (Piece[] row : chessBoard.getBoard()) {
-            for (Piece piece : row) {
-                if (piece != null) {
-                    score += pieceValue(piece);
+        // The move becomes the best line from ply, followed by the line just found from the next ply
+        private void updatePrincipalVariation(int ply, int move) {
+            pvTable[ply][ply] = move;
+            int length = ply + 1;
+            if (length < MoveOrderer.MAX_PLY) {
+                length = Math.max(length, pvLength[ply + 1]);
+                System.arraycopy(pvTable[ply + 1], ply + 1, pvTable[ply], ply + 1, length - ply - 1);
+            }
+            pvLength[ply] = length;
+        }
+
+        // Plays out captures (and every evasion when in check) until the position is quiet, so the
+        // evaluator is never asked about a position in the middle of an exchange
+        private int quiescence(ChessBoard chessBoard, int alpha, int beta, int ply) {
+            quiescenceNodes++;
+            if ((++nodes & NODE_PUBLISH_INTERVAL - 1) == 0) publishNodes();
+            if (stopped) return 0;
+
+            Player player = chessBoard.getSideToMove();
+            boolean inCheck = chessBoard.isInCheck(player);
+            int standPat = -INFINITY;
+            if (!inCheck || ply >= MoveOrderer.MAX_PLY - 1) {
+                // Stand pat: the side to move can usually do at least as well as the static score
+                standPat = evaluate(chessBoard, player);
+                if (standPat >= beta || ply >= MoveOrderer.MAX_PLY - 1) return standPat;
+                alpha = Math.max(alpha, standPat);
+            }
+
+            // In check every evasion is generated, and having none is mate
+            int bestEval = standPat;
+            MoveList moves = moveLists[ply];
+            moves.clear();
+            if (inCheck) {
+                chessBoard.generateLegalMoves(player, moves);
+                if (moves.isEmpty()) return -MATE + ply;
+            } else {
+                chessBoard.generateLegalCaptures(player, moves);
+            }
+            orderer.order(chessBoard, moves, 0, ply);
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                // Delta pruning: skip captures that can't lift the score to alpha even with a margin
+                if (!inCheck && Move.promotion(move) == 0 && Move.isCapture(move)
+                        && standPat + Evaluation.PIECE_VALUES[Move.capturedPiece(move) % 6] + DELTA_MARGIN <= alpha) {
+                    continue;
+                }
+                // Captures that lose material in the exchange can't raise a standing-pat score
+                if (!inCheck && chessBoard.staticExchange(move) < 0) {
+                    continue;
+                }
+
+                chessBoard.makeMove(move);
+                int eval = -quiescence(chessBoard, -beta, -alpha, ply + 1);
+                chessBoard.unmakeMove();
+                if (stopped) return 0;
+
+                if (eval > bestEval) {
+                    bestEval = eval;
+                    if (eval > alpha) alpha = eval;
+                    if (alpha >= beta) break;
                 }
             }
+            return bestEval;
+        }
+    }
+
+    // Moves the table's best move for this position to the front of the list
+    private static void orderHashMove(MoveList moves, int hashMove) {
+        if (hashMove == 0) return;
+        for (int i = 0; i < moves.size(); i++) {
+            if ((moves.get(i) & Move.CODE_MASK) == hashMove) {
+                moves.moveToFront(i);
+                return;
+            }
         }
+    }
+
+    // Mate and tablebase scores count plies from the root; they are stored relative to the node
+    // instead, so they stay valid when the position is reached at another ply
+    private static int scoreToTable(int score, int ply) {
+        if (score > TABLEBASE_BOUND) return score + ply;
+        if (score < -TABLEBASE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score > TABLEBASE_BOUND) return score - ply;
+        if (score < -TABLEBASE_BOUND) return score + ply;
         return score;
     }
 
-    private int pieceValue(Piece piece) {
-        switch (PieceType.getType()) {
-            case PAWN: return 10;
-            case KNIGHT: return 30;
-            case BISHOP: return 30;
-            case ROOK: return 50;
-            case QUEEN: return 90;
-            case KING: return Integer.MAX_VALUE; // Highest value for King
-            default: return 0;
+    // Whether the player has anything besides pawns and the king; without, zugzwang is common
+    private static boolean hasPieces(ChessBoard chessBoard, Player player) {
+        return (chessBoard.getPieces(player, PieceType.KNIGHT) | chessBoard.getPieces(player, PieceType.BISHOP)
+            | chessBoard.getPieces(player, PieceType.ROOK) | chessBoard.getPieces(player, PieceType.QUEEN)) != 0;
+    }
+
+    // Tablebase wins rank below mates but above any evaluation, sooner ones higher; cursed wins and
+    // blessed losses are draws by the fifty-move rule, nudged towards the side that would win without it
+    private static int tablebaseScore(int wdl, int ply) {
+        switch (wdl) {
+            case SyzygyTablebase.WIN: return TABLEBASE_WIN - ply;
+            case SyzygyTablebase.LOSS: return -TABLEBASE_WIN + ply;
+            default: return wdl;
         }
     }
+
+    // Tapered material and piece-square score from the point of view of the given player; the board
+    // keeps the totals up to date as moves are made, so this is O(1)
+    private int evaluate(ChessBoard chessBoard, Player player) {
+        return Evaluation.evaluate(chessBoard, player);
+    }
 }
\ No newline at end of file
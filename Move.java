@@ -1,28 +1,86 @@
+// A move as seen by ChessGUI and the public API. The engine itself passes moves around as packed
+// ints (see encode) and only decodes them into Move objects at the edges.
 public class Move {
+    // Packed layout: from square in bits 0-5, to square in bits 6-11, promotion piece type in bits 12-14
+    // (0 for none), moved piece index in bits 16-19, captured piece index + 1 in bits 20-23 (0 for none),
+    // then the flags. The low 15 bits identify the move within a position and are what the
+    // transposition table stores.
+    public static final int NONE = 0;
+    public static final int CASTLING = 1 << 24;
+    public static final int EN_PASSANT = 1 << 25;
+    public static final int DOUBLE_PUSH = 1 << 26;
+    public static final int CODE_MASK = 0x7FFF;
+
     private final int startRow;
     private final int startCol;
     private final int endRow;
     private final int endCol;
     private final Piece movedPiece;
     private final Piece capturedPiece;
- 
+    private final PieceType promotion; // Piece a pawn turns into on the last rank, or null
+    private final int encoded; // Packed form when known, otherwise NONE
+
     public Move(int startRow,int startCol,int endRow,int endCol,
                  Piece movedPiece,Piece capturedPiece) {
- 
+       this(startRow,startCol,endRow,endCol,movedPiece,capturedPiece,null);
+    }
+
+    public Move(int startRow,int startCol,int endRow,int endCol,
+                 Piece movedPiece,Piece capturedPiece,PieceType promotion) {
+
        this.startRow=startRow;
        this.startCol=startCol;
        this.endRow=endRow;
        this.endCol=endCol;
        this.movedPiece=movedPiece;
-       this.capturedPiece=capturedPiece; 
+       this.capturedPiece=capturedPiece;
+       this.promotion=promotion;
+       this.encoded=NONE;
+    }
+
+    // Decoded view of a packed move
+    public Move(int move) {
+       this.startRow=Bitboards.row(from(move));
+       this.startCol=Bitboards.col(from(move));
+       this.endRow=Bitboards.row(to(move));
+       this.endCol=Bitboards.col(to(move));
+       this.movedPiece=ChessBoard.pieceFor(movedPiece(move));
+       this.capturedPiece=capturedPiece(move)>=0?ChessBoard.pieceFor(capturedPiece(move)):null;
+       this.promotion=promotion(move)!=0?PieceType.values()[promotion(move)]:null;
+       this.encoded=move;
     }
- 
+
     public int getStartRow() { return startRow; }
     public int getStartCol() { return startCol; }
     public int getEndRow() { return endRow; }
     public int getEndCol() { return endCol; }
-    
+
     public Piece getMovedPiece() { return movedPiece; }
-    
+
     public Piece getCapturedPiece() { return capturedPiece; }
+
+    public PieceType getPromotion() { return promotion; }
+
+    public int getEncoded() { return encoded; }
+
+    public static int encode(int from, int to, int promotion, int movedPiece, int capturedPiece, int flags) {
+       return from | (to << 6) | (promotion << 12) | (movedPiece << 16) | ((capturedPiece + 1) << 20) | flags;
+    }
+
+    public static int from(int move) { return move & 63; }
+    public static int to(int move) { return (move >>> 6) & 63; }
+    public static int promotion(int move) { return (move >>> 12) & 7; }
+    public static int movedPiece(int move) { return (move >>> 16) & 15; }
+    public static int capturedPiece(int move) { return ((move >>> 20) & 15) - 1; }
+    public static boolean isCapture(int move) { return (move & (15 << 20)) != 0; }
+    public static boolean isTactical(int move) { return (move & ((15 << 20) | (7 << 12))) != 0; }
+    public static boolean isCastling(int move) { return (move & CASTLING) != 0; }
+    public static boolean isEnPassant(int move) { return (move & EN_PASSANT) != 0; }
+    public static boolean isDoublePush(int move) { return (move & DOUBLE_PUSH) != 0; }
+
+    // Long algebraic notation such as "e2e4" or "e7e8q"
+    public static String toString(int move) {
+       String name=ChessBoard.squareName(from(move))+ChessBoard.squareName(to(move));
+       return promotion(move)!=0?name+"pnbrqk".charAt(promotion(move)):name;
+    }
  }
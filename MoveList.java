@@ -0,0 +1,83 @@
+// Reusable list of packed moves with a parallel score array for ordering.
+// The search keeps one per ply, so generating moves at a node allocates nothing.
+public class MoveList {
+    public static final int CAPACITY = 256; // More than the legal moves of any chess position
+
+    private final int[] moves = new int[CAPACITY];
+    private final int[] scores = new int[CAPACITY];
+    private int size;
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int getScore(int index) {
+        return scores[index];
+    }
+
+    public void setScore(int index, int score) {
+        scores[index] = score;
+    }
+
+    public void swap(int i, int j) {
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    // Moves the entry at index to the front, keeping the order of the others
+    public void moveToFront(int index) {
+        int move = moves[index];
+        int score = scores[index];
+        System.arraycopy(moves, 0, moves, 1, index);
+        System.arraycopy(scores, 0, scores, 1, index);
+        moves[0] = move;
+        scores[0] = score;
+    }
+
+    public int indexOf(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) return i;
+        }
+        return -1;
+    }
+
+    // Sorts by score, highest first; insertion sort suits these short, often nearly ordered lists
+    public void sort() {
+        for (int i = 1; i < size; i++) {
+            int move = moves[i];
+            int score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            scores[j + 1] = score;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+// Orders moves so alpha-beta sees the likely best ones first: the hash move, then captures by
+// MVV-LVA (most valuable victim, least valuable attacker), then two killer moves per ply, then
+// quiet moves by how often they caused a cutoff before (history heuristic), and last the captures
+// that static exchange evaluation says lose material.
+// Each search thread has its own orderer, so nothing here is shared.
+public class MoveOrderer {
+    public static final int MAX_PLY = 128;
+
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int FIRST_KILLER_SCORE = 1 << 27;
+    private static final int SECOND_KILLER_SCORE = FIRST_KILLER_SCORE - 1;
+    private static final int LOSING_CAPTURE_SCORE = -CAPTURE_SCORE; // Below every history score
+    private static final int HISTORY_LIMIT = 1 << 20; // Keeps history scores below the killers
+
+    // MVV-LVA weights by piece type: pawn, knight, bishop, rook, queen, king
+    private static final int[] VICTIM_VALUE = {100, 300, 300, 500, 900, 10000};
+    private static final int[] ATTACKER_VALUE = {1, 3, 3, 5, 9, 10};
+
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][][] history = new int[2][64][64];
+
+    // Forgets the killers and fades the history at the start of a new search
+    public void newSearch() {
+        for (int[] pair : killers) {
+            pair[0] = 0;
+            pair[1] = 0;
+        }
+        for (int[][] side : history) {
+            for (int[] from : side) {
+                for (int to = 0; to < 64; to++) {
+                    from[to] /= 8;
+                }
+            }
+        }
+    }
+
+    public void order(ChessBoard board, MoveList moves, int hashMove, int ply) {
+        for (int i = 0; i < moves.size(); i++) {
+            moves.setScore(i, score(board, moves.get(i), hashMove, ply));
+        }
+        moves.sort();
+    }
+
+    private int score(ChessBoard board, int move, int hashMove, int ply) {
+        if ((move & Move.CODE_MASK) == hashMove) return HASH_MOVE_SCORE;
+
+        if (Move.isTactical(move)) {
+            int victim = Move.isCapture(move) ? VICTIM_VALUE[Move.capturedPiece(move) % 6] : 0;
+            int promotion = Move.promotion(move) != 0 ? VICTIM_VALUE[Move.promotion(move)] : 0;
+            int mvvLva = (victim + promotion) * 16 - ATTACKER_VALUE[Move.movedPiece(move) % 6];
+            // Taking a piece worth at least the attacker can't lose material, so only the rest need the exchange
+            if (victim + promotion < VICTIM_VALUE[Move.movedPiece(move) % 6] && board.staticExchange(move) < 0) {
+                return LOSING_CAPTURE_SCORE + mvvLva;
+            }
+            return CAPTURE_SCORE + mvvLva;
+        }
+
+        if (ply < MAX_PLY) {
+            if (killers[ply][0] == move) return FIRST_KILLER_SCORE;
+            if (killers[ply][1] == move) return SECOND_KILLER_SCORE;
+        }
+        return history[Move.movedPiece(move) / 6][Move.from(move)][Move.to(move)];
+    }
+
+    public boolean isKiller(int move, int ply) {
+        return ply < MAX_PLY && (killers[ply][0] == move || killers[ply][1] == move);
+    }
+
+    // Called when a quiet move fails high at the given depth and ply; captures and promotions are
+    // ordered by material and never become killers or get history
+    public void recordCutoff(int move, int depth, int ply) {
+        if (Move.isTactical(move)) return;
+
+        if (ply < MAX_PLY && killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        int[] from = history[Move.movedPiece(move) / 6][Move.from(move)];
+        int to = Move.to(move);
+        from[to] += depth * depth;
+        if (from[to] > HISTORY_LIMIT) {
+            // Halve the whole table so the scores keep their relative order
+            for (int[][] side : history) {
+                for (int[] row : side) {
+                    for (int i = 0; i < 64; i++) {
+                        row[i] /= 2;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,11 +1,11 @@
 public class Pawn extends Piece {
     public Pawn(Player player) {
-        super(player); // Pass the PieceType to the superclass constructor
+        super(player, PieceType.PAWN); // Pass the PieceType to the superclass constructor
     }
 
     @Override
     public boolean isValidMove(int startX, int startY, int endX, int endY, ChessBoard board) {
-        int direction = (player == Player.WHITE) ? -1 : 1; // White moves up, Black moves down
+        int direction = (player == Player.WHITE) ? 1 : -1; // White starts on rows 0-1 and moves towards row 7
 
         // Move forward by one square
         if (startX + direction == endX && startY == endY && board.getPieceAt(endX, endY) == null) {
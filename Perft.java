@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Counts the leaf nodes of the move tree to a fixed depth. The totals for well-known positions are
+// published, so a mismatch pinpoints a move generator bug, and nodes per second measures its speed.
+//
+//   java Perft [--fen "<fen>"] [--divide] [--bulk] [--hash <MB>] [--threads <n>] [--suite] [depth]
+public class Perft {
+    // Reference positions and their node counts from depth 1
+    private static final String[] REFERENCE_FENS = {
+        ChessBoard.START_FEN,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+    private static final long[][] REFERENCE_COUNTS = {
+        {20, 400, 8902, 197281, 4865609, 119060324},
+        {48, 2039, 97862, 4085603, 193690690},
+        {14, 191, 2812, 43238, 674624, 11030083},
+        {6, 264, 9467, 422333, 15833292},
+        {44, 1486, 62379, 2103487, 89941194},
+        {46, 2079, 89890, 3894594}
+    };
+
+    private final boolean bulk;
+    private final int threads;
+    // Shared subtree counts keyed by position and depth, lock-free like the transposition table
+    private final long[] keys;
+    private final long[] counts;
+
+    public Perft(boolean bulk, int hashMb, int threads) {
+        this.bulk = bulk;
+        this.threads = Math.max(1, threads);
+        int entries = 0;
+        if (hashMb > 0) {
+            entries = Integer.highestOneBit((int) Math.min((long) hashMb * 1024 * 1024 / 16, 1 << 30));
+        }
+        this.keys = new long[entries];
+        this.counts = new long[entries];
+    }
+
+    public long perft(ChessBoard board, int depth) {
+        if (depth <= 0) return 1;
+
+        MoveList rootMoves = new MoveList();
+        board.generateLegalMoves(board.getSideToMove(), rootMoves);
+        long[] results = countRootMoves(board, rootMoves, depth);
+        long total = 0;
+        for (long count : results) total += count;
+        return total;
+    }
+
+    // Node count below each root move, printed as it would be by other engines' divide commands
+    public long divide(ChessBoard board, int depth) {
+        if (depth <= 0) return 1;
+
+        MoveList rootMoves = new MoveList();
+        board.generateLegalMoves(board.getSideToMove(), rootMoves);
+        long[] results = countRootMoves(board, rootMoves, depth);
+        long total = 0;
+        for (int i = 0; i < rootMoves.size(); i++) {
+            System.out.println(Move.toString(rootMoves.get(i)) + ": " + results[i]);
+            total += results[i];
+        }
+        System.out.println();
+        System.out.println("Moves: " + rootMoves.size());
+        return total;
+    }
+
+    // Splits the root moves over the worker threads, each on its own copy of the board
+    private long[] countRootMoves(ChessBoard board, MoveList rootMoves, int depth) {
+        long[] results = new long[rootMoves.size()];
+        if (threads == 1) {
+            Counter counter = new Counter(board, depth);
+            for (int i = 0; i < rootMoves.size(); i++) {
+                results[i] = counter.countMove(rootMoves.get(i), depth);
+            }
+            return results;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < rootMoves.size(); i++) {
+                int move = rootMoves.get(i);
+                futures.add(pool.submit(() -> new Counter(board, depth).countMove(move, depth)));
+            }
+            for (int i = 0; i < results.length; i++) {
+                results[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Perft interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Perft failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    private long probe(long key, int depth) {
+        if (keys.length == 0) return -1;
+        int index = (int) key & (keys.length - 1);
+        long data = counts[index];
+        if ((keys[index] ^ data) != key || (data & 0xFF) != depth) return -1;
+        return data >>> 8;
+    }
+
+    private void store(long key, int depth, long count) {
+        if (keys.length == 0) return;
+        int index = (int) key & (keys.length - 1);
+        long data = (count << 8) | depth;
+        counts[index] = data;
+        keys[index] = key ^ data;
+    }
+
+    // Per-thread state: a board copy and one move list per ply
+    private class Counter {
+        private final ChessBoard board;
+        private final MoveList[] moveLists;
+
+        Counter(ChessBoard board, int depth) {
+            this.board = new ChessBoard(board);
+            this.moveLists = new MoveList[depth + 1];
+            for (int i = 0; i < moveLists.length; i++) {
+                moveLists[i] = new MoveList();
+            }
+        }
+
+        long countMove(int move, int depth) {
+            board.makeMove(move);
+            long count = count(depth - 1);
+            board.unmakeMove();
+            return count;
+        }
+
+        private long count(int depth) {
+            if (depth == 0) return 1;
+
+            long cached = probe(board.getHash(), depth);
+            if (cached >= 0) return cached;
+
+            MoveList moves = moveLists[depth];
+            moves.clear();
+            board.generateLegalMoves(board.getSideToMove(), moves);
+
+            // With bulk counting the legal moves at depth 1 are the leaves; no need to visit them
+            if (bulk && depth == 1) return moves.size();
+
+            long nodes = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                board.makeMove(moves.get(i));
+                nodes += count(depth - 1);
+                board.unmakeMove();
+            }
+
+            store(board.getHash(), depth, nodes);
+            return nodes;
+        }
+    }
+
+    public static void main(String[] args) {
+        String fen = ChessBoard.START_FEN;
+        int depth = 5;
+        boolean divide = false;
+        boolean bulk = false;
+        boolean suite = false;
+        int hashMb = 0;
+        int threads = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--fen": fen = args[++i]; break;
+                case "--divide": divide = true; break;
+                case "--bulk": bulk = true; break;
+                case "--hash": hashMb = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--suite": suite = true; break;
+                default: depth = Integer.parseInt(args[i]); break;
+            }
+        }
+
+        Perft perft = new Perft(bulk, hashMb, threads);
+        if (divide) {
+            run(perft, fen, depth, true);
+            return;
+        }
+
+        boolean passed = true;
+        if (suite) {
+            // Every reference position up to the requested depth or the deepest published count
+            for (String referenceFen : REFERENCE_FENS) {
+                System.out.println(referenceFen);
+                for (int d = 1; d <= depth && d <= referenceCounts(referenceFen).length; d++) {
+                    passed &= run(perft, referenceFen, d, false);
+                }
+            }
+        } else {
+            for (int d = 1; d <= depth; d++) {
+                passed &= run(perft, fen, d, false);
+            }
+        }
+        if (!passed) System.exit(1);
+    }
+
+    // Runs one count, prints it with the speed and reports whether it matched the reference
+    private static boolean run(Perft perft, String fen, int depth, boolean divide) {
+        ChessBoard board = new ChessBoard(fen);
+        long start = System.nanoTime();
+        long nodes = divide ? perft.divide(board, depth) : perft.perft(board, depth);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        long[] reference = referenceCounts(fen);
+        long expected = depth <= reference.length ? reference[depth - 1] : -1;
+        String result = expected < 0 ? "" : nodes == expected ? "  ok" : "  MISMATCH, expected " + expected;
+        System.out.printf("depth %d  nodes %d  time %d ms  %d nps%s%n",
+            depth, nodes, elapsed / 1_000_000, nodes * 1_000_000_000L / elapsed, result);
+        return expected < 0 || nodes == expected;
+    }
+
+    private static long[] referenceCounts(String fen) {
+        String placement = new ChessBoard(fen).toFen();
+        for (int i = 0; i < REFERENCE_FENS.length; i++) {
+            // Compare normalised positions without the move counters
+            if (stripCounters(new ChessBoard(REFERENCE_FENS[i]).toFen()).equals(stripCounters(placement))) {
+                return REFERENCE_COUNTS[i];
+            }
+        }
+        return new long[0];
+    }
+
+    private static String stripCounters(String fen) {
+        String[] fields = fen.split(" ");
+        return fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3];
+    }
+}
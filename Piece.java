@@ -11,16 +11,6 @@ public abstract class Piece {
         return player;
     }
 
-// Enum for piece types
-public enum PieceType {
-    PAWN,
-    KNIGHT,
-    BISHOP,
-    ROOK,
-    QUEEN,
-    KING
-}
-
     public PieceType getType() {
         return this.type; // Method to get the piece type
     }
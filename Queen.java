@@ -1,17 +1,17 @@
 public class Queen extends Piece {
     public Queen(Player player) {
-        super(player);
+        super(player, PieceType.QUEEN);
     }
  
     @Override 
     public boolean isValidMove(int startX,int startY,int endX,int endY,
                                ChessBoard board){
-        Rook rook = new Rook(player);
-        Bishop bishop = new Bishop(player);
-        
         // A queen can move like both a rook and a bishop.
-        return rook.isValidMove(startX,startY,endX,endY,board)
-                || bishop.isValidMove(startX,startY,endX,endY,board);
+        long attacks = Attacks.queen(Bitboards.square(startX, startY), board.getOccupied());
+        if ((attacks & Bitboards.bit(Bitboards.square(endX, endY))) == 0) return false;
+
+        Piece target = board.getPieceAt(endX, endY);
+        return target == null || target.getPlayer() != player;
     }
  
     @Override 
@@ -1,24 +1,18 @@
 public class Rook extends Piece {
     public Rook(Player player) {
-        super(player);
+        super(player, PieceType.ROOK);
     }
 
     @Override
     public boolean isValidMove(int startX, int startY, int endX, int endY, ChessBoard board) {
         if (startX != endX && startY != endY) return false; // Must move in a straight line
 
-        // Check for obstacles in the path of the move
-        if (startX == endX) { // Horizontal move
-            for (int i = Math.min(startY, endY) + 1; i < Math.max(startY, endY); i++) {
-                if (board.getPieceAt(startX, i) != null) return false;
-            }
-        } else { // Vertical move
-            for (int i = Math.min(startX, endX) + 1; i < Math.max(startX, endX); i++) {
-                if (board.getPieceAt(i, startY) != null) return false;
-            }
-        }
-        
-        return true; // Valid move
+        // The path is clear when the target is in the rook's attack set for the current occupancy
+        long attacks = Attacks.rook(Bitboards.square(startX, startY), board.getOccupied());
+        if ((attacks & Bitboards.bit(Bitboards.square(endX, endY))) == 0) return false;
+
+        Piece target = board.getPieceAt(endX, endY);
+        return target == null || target.getPlayer() != player; // Valid move unless it captures our own piece
     }
 
     @Override
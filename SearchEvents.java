@@ -0,0 +1,97 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Java Flight Recorder events mirroring SearchStats, so search behaviour shows up in recordings next
+// to GC and CPU data. Loading the first event class starts up JFR, which takes a noticeable part of
+// a second, so nothing is created until a recording has been started in this JVM.
+public final class SearchEvents {
+    private SearchEvents() {
+    }
+
+    @Name("chess.SearchIteration")
+    @Label("Search Iteration")
+    @Category({"Chess", "Search"})
+    @Description("One iteration of iterative deepening completed by one search thread")
+    @StackTrace(false)
+    public static final class Iteration extends Event {
+        @Label("Thread") int thread;
+        @Label("Depth") int depth;
+        @Label("Score") int score;
+        @Label("Best Move") String bestMove;
+        @Label("Nodes") long nodes;
+        @Label("Iteration Nodes") long iterationNodes;
+        @Label("Quiescence Nodes") long quiescenceNodes;
+        @Label("TT Hits") long ttHits;
+        @Label("Cutoffs") long cutoffs;
+        @Label("First Move Cutoffs") long firstMoveCutoffs;
+        @Label("Nodes per Second") long nodesPerSecond;
+        @Label("Elapsed") @Timespan(Timespan.NANOSECONDS) long elapsed;
+    }
+
+    @Name("chess.Search")
+    @Label("Search")
+    @Category({"Chess", "Search"})
+    @Description("A complete search, counters summed over all threads")
+    @StackTrace(false)
+    public static final class Search extends Event {
+        @Label("Threads") int threads;
+        @Label("Depth") int depth;
+        @Label("Score") int score;
+        @Label("Best Move") String bestMove;
+        @Label("Nodes") long nodes;
+        @Label("Quiescence Nodes") long quiescenceNodes;
+        @Label("TT Hits") long ttHits;
+        @Label("Cutoffs") long cutoffs;
+        @Label("First Move Cutoffs") long firstMoveCutoffs;
+        @Label("Nodes per Second") long nodesPerSecond;
+    }
+
+    // Starts timing a search, or returns null when JFR is not in use
+    static Search beginSearch() {
+        if (!FlightRecorder.isInitialized()) return null;
+        Search event = new Search();
+        event.begin();
+        return event;
+    }
+
+    static void iterationCompleted(SearchStats stats) {
+        if (!FlightRecorder.isInitialized()) return;
+        Iteration event = new Iteration();
+        if (!event.shouldCommit()) return;
+        event.thread = stats.getThread();
+        event.depth = stats.getDepth();
+        event.score = stats.getScore();
+        event.bestMove = stats.getBestMove() != 0 ? Move.toString(stats.getBestMove()) : null;
+        event.nodes = stats.getNodes();
+        event.iterationNodes = stats.getIterationNodes();
+        event.quiescenceNodes = stats.getQuiescenceNodes();
+        event.ttHits = stats.getTtHits();
+        event.cutoffs = stats.getCutoffs();
+        event.firstMoveCutoffs = stats.getFirstMoveCutoffs();
+        event.nodesPerSecond = stats.getNodesPerSecond();
+        event.elapsed = stats.getElapsedNanos();
+        event.commit();
+    }
+
+    // Ends the event from beginSearch, so its duration is the search time
+    static void searchCompleted(Search event, SearchStats stats, int threads) {
+        if (event == null || !event.shouldCommit()) return;
+        event.threads = threads;
+        event.depth = stats.getDepth();
+        event.score = stats.getScore();
+        event.bestMove = stats.getBestMove() != 0 ? Move.toString(stats.getBestMove()) : null;
+        event.nodes = stats.getNodes();
+        event.quiescenceNodes = stats.getQuiescenceNodes();
+        event.ttHits = stats.getTtHits();
+        event.cutoffs = stats.getCutoffs();
+        event.firstMoveCutoffs = stats.getFirstMoveCutoffs();
+        event.nodesPerSecond = stats.getNodesPerSecond();
+        event.commit();
+    }
+}
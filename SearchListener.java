@@ -0,0 +1,11 @@
+// Receives search progress from Minimax. Iterations are reported by whichever search thread
+// finished them, so with several threads an implementation must be thread-safe.
+public interface SearchListener {
+    // A search thread finished an iteration
+    default void iterationCompleted(SearchStats stats) {
+    }
+
+    // The whole search is over; the stats are summed over all threads
+    default void searchCompleted(SearchStats stats) {
+    }
+}
@@ -0,0 +1,95 @@
+// Counters from one search thread at the end of an iteration, or summed over all threads for a whole
+// search (thread -1). Counts are cumulative from the start of the search; nodes include quiescence nodes.
+public class SearchStats {
+    private final int thread;
+    private final int depth;
+    private final int score;
+    private final int bestMove; // Packed, see Move
+    private final int[] principalVariation; // Expected line from the root, starting with bestMove
+    private final long nodes;
+    private final long quiescenceNodes;
+    private final long iterationNodes; // Nodes spent on this iteration alone
+    private final long previousIterationNodes;
+    private final long ttProbes;
+    private final long ttHits;
+    private final long cutoffs;
+    private final long firstMoveCutoffs;
+    private final long tablebaseHits;
+    private final long elapsedNanos;
+
+    public SearchStats(int thread, int depth, int score, int bestMove, int[] principalVariation, long nodes, long quiescenceNodes,
+                       long iterationNodes, long previousIterationNodes, long ttProbes, long ttHits,
+                       long cutoffs, long firstMoveCutoffs, long tablebaseHits, long elapsedNanos) {
+        this.thread = thread;
+        this.depth = depth;
+        this.score = score;
+        this.bestMove = bestMove;
+        this.principalVariation = principalVariation;
+        this.nodes = nodes;
+        this.quiescenceNodes = quiescenceNodes;
+        this.iterationNodes = iterationNodes;
+        this.previousIterationNodes = previousIterationNodes;
+        this.ttProbes = ttProbes;
+        this.ttHits = ttHits;
+        this.cutoffs = cutoffs;
+        this.firstMoveCutoffs = firstMoveCutoffs;
+        this.tablebaseHits = tablebaseHits;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getThread() { return thread; }
+    public int getDepth() { return depth; }
+    public int getScore() { return score; }
+    public int getBestMove() { return bestMove; }
+    public int[] getPrincipalVariation() { return principalVariation.clone(); }
+    public long getNodes() { return nodes; }
+    public long getQuiescenceNodes() { return quiescenceNodes; }
+    public long getIterationNodes() { return iterationNodes; }
+    public long getTtProbes() { return ttProbes; }
+    public long getTtHits() { return ttHits; }
+    public long getCutoffs() { return cutoffs; }
+    public long getFirstMoveCutoffs() { return firstMoveCutoffs; }
+    public long getTablebaseHits() { return tablebaseHits; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    // The principal variation in long algebraic notation, separated by spaces
+    public String getPrincipalVariationString() {
+        StringBuilder line = new StringBuilder();
+        for (int move : principalVariation) {
+            if (line.length() > 0) line.append(' ');
+            line.append(Move.toString(move));
+        }
+        return line.toString();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public long getNodesPerSecond() {
+        return elapsedNanos > 0 ? nodes * 1_000_000_000L / elapsedNanos : 0;
+    }
+
+    // Share of beta cutoffs caused by the first move searched; near 1 means the ordering is good
+    public double getFirstMoveCutoffRate() {
+        return cutoffs > 0 ? (double) firstMoveCutoffs / cutoffs : 0;
+    }
+
+    public double getTtHitRate() {
+        return ttProbes > 0 ? (double) ttHits / ttProbes : 0;
+    }
+
+    // Effective branching factor: growth in work from the previous iteration to this one
+    public double getBranchingFactor() {
+        return previousIterationNodes > 0 ? (double) iterationNodes / previousIterationNodes : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("thread %d depth %d score %d move %s nodes %d qnodes %d nps %d tt %.1f%% "
+                + "first-move cutoffs %.1f%% ebf %.2f tb %d time %d ms pv %s",
+            thread, depth, score, bestMove != 0 ? Move.toString(bestMove) : "-", nodes, quiescenceNodes,
+            getNodesPerSecond(), getTtHitRate() * 100, getFirstMoveCutoffRate() * 100, getBranchingFactor(),
+            tablebaseHits, getElapsedMillis(), getPrincipalVariationString());
+    }
+}
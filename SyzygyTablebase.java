@@ -0,0 +1,992 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Probes Syzygy endgame tablebases: .rtbw files give win/draw/loss (WDL), .rtbz files the distance
+// to the next capture or pawn move (DTZ). Files are found by name at construction, but only
+// memory-mapped when a position first needs them; values are decompressed straight from the
+// mapping, block by block, so a probe touches a few hundred bytes of a file that may be gigabytes.
+//
+// The indexing and decompression follow the format as written by the generator and read by the
+// reference probing code: pieces are grouped and each group is encoded as a combination of
+// squares, with symmetry reductions for the leading group, and values are stored with canonical
+// Huffman codes over a recursive-pairing alphabet.
+//
+// Tablebases know nothing about castling, so positions with castling rights are never probed.
+public class SyzygyTablebase {
+    public static final int PROBE_FAILED = Integer.MIN_VALUE;
+
+    // WDL results from the side to move's point of view. Cursed wins and blessed losses are wins and
+    // losses that the fifty-move rule turns into draws.
+    public static final int LOSS = -2;
+    public static final int BLESSED_LOSS = -1;
+    public static final int DRAW = 0;
+    public static final int CURSED_WIN = 1;
+    public static final int WIN = 2;
+
+    private static final int WDL = 0;
+    private static final int DTZ = 1;
+
+    // Outcome of a table lookup beyond its value
+    private static final int OK = 0;
+    private static final int FAIL = 1;
+    private static final int CHANGE_STM = 2; // The DTZ table only stores the other side to move
+    private static final int ZEROING_BEST_MOVE = 3; // The best move is a capture or pawn move
+
+    private static final int FLAG_STM = 1;
+    private static final int FLAG_MAPPED = 2;
+    private static final int FLAG_WIN_PLIES = 4;
+    private static final int FLAG_LOSS_PLIES = 8;
+    private static final int FLAG_WIDE = 16;
+    private static final int FLAG_SINGLE_VALUE = 128;
+
+    private static final int MAX_PIECES = 7;
+    private static final int MAX_DTZ = 1 << 18;
+    private static final String PIECE_LETTERS = "PNBRQK"; // By PieceType ordinal
+    private static final byte[][] MAGIC = {
+        {(byte) 0x71, (byte) 0xE8, (byte) 0x23, (byte) 0x5D}, // WDL
+        {(byte) 0xD7, (byte) 0x66, (byte) 0x0C, (byte) 0xA5} // DTZ
+    };
+
+    // Encoding tables shared by all files
+    private static final int[] MAP_PAWNS = new int[64];
+    private static final int[] MAP_B1H1H7 = new int[64];
+    private static final int[] MAP_A1D1D4 = new int[64];
+    private static final int[][] MAP_KK = new int[10][64];
+    private static final long[][] BINOMIAL = new long[6][64];
+    private static final long[][] LEAD_PAWN_IDX = new long[6][64];
+    private static final long[][] LEAD_PAWNS_SIZE = new long[6][4];
+
+    static {
+        int code = 0;
+        for (int square = 0; square < 64; square++) {
+            if (offDiagonal(square) < 0) MAP_B1H1H7[square] = code++;
+        }
+
+        // The a1-d1-d4 triangle, with the diagonal squares last
+        code = 0;
+        int[] diagonal = new int[4];
+        int diagonalCount = 0;
+        for (int square = 0; square <= Bitboards.square(3, 3); square++) {
+            if (offDiagonal(square) < 0 && Bitboards.col(square) <= 3) {
+                MAP_A1D1D4[square] = code++;
+            } else if (offDiagonal(square) == 0 && Bitboards.col(square) <= 3) {
+                diagonal[diagonalCount++] = square;
+            }
+        }
+        for (int i = 0; i < diagonalCount; i++) {
+            MAP_A1D1D4[diagonal[i]] = code++;
+        }
+
+        // The 462 legal placements of two kings with the first in the triangle; when the first is on
+        // the diagonal the second may not be above it. Placements with both on the diagonal come last.
+        code = 0;
+        int[][] bothOnDiagonal = new int[64][2];
+        int bothCount = 0;
+        for (int idx = 0; idx < 10; idx++) {
+            for (int s1 = 0; s1 <= Bitboards.square(3, 3); s1++) {
+                if (MAP_A1D1D4[s1] != idx || (idx == 0 && s1 != Bitboards.square(0, 1))) continue;
+                for (int s2 = 0; s2 < 64; s2++) {
+                    if (((Attacks.KING[s1] | Bitboards.bit(s1)) & Bitboards.bit(s2)) != 0) continue;
+                    if (offDiagonal(s1) == 0 && offDiagonal(s2) > 0) continue;
+                    if (offDiagonal(s1) == 0 && offDiagonal(s2) == 0) {
+                        bothOnDiagonal[bothCount][0] = idx;
+                        bothOnDiagonal[bothCount++][1] = s2;
+                    } else {
+                        MAP_KK[idx][s2] = code++;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < bothCount; i++) {
+            MAP_KK[bothOnDiagonal[i][0]][bothOnDiagonal[i][1]] = code++;
+        }
+
+        BINOMIAL[0][0] = 1;
+        for (int n = 1; n < 64; n++) {
+            for (int k = 0; k < 6 && k <= n; k++) {
+                BINOMIAL[k][n] = (k > 0 ? BINOMIAL[k - 1][n - 1] : 0) + (k < n ? BINOMIAL[k][n - 1] : 0);
+            }
+        }
+
+        // Pawns on a2-h7 map to 47 down to 0: the leading pawn is the one with the highest value,
+        // nearest the edge and, on the same file, lowest
+        int available = 47;
+        for (int leadPawns = 1; leadPawns <= 5; leadPawns++) {
+            for (int file = 0; file < 4; file++) {
+                long idx = 0;
+                for (int rank = 1; rank <= 6; rank++) {
+                    int square = Bitboards.square(rank, file);
+                    if (leadPawns == 1) {
+                        MAP_PAWNS[square] = available--;
+                        MAP_PAWNS[square ^ 7] = available--;
+                    }
+                    LEAD_PAWN_IDX[leadPawns][square] = idx;
+                    idx += BINOMIAL[leadPawns - 1][MAP_PAWNS[square]];
+                }
+                LEAD_PAWNS_SIZE[leadPawns][file] = idx;
+            }
+        }
+    }
+
+    private final String[] directories;
+    private final Map<String, Table> tables = new HashMap<>(); // By material, both colour orders
+    private int maxPieces;
+    private int probeLimit;
+
+    // Small cache of WDL results by Zobrist key; lock-free like the transposition table
+    private static final int CACHE_SIZE = 1 << 16;
+    private final long[] cacheKeys = new long[CACHE_SIZE];
+    private final long[] cacheValues = new long[CACHE_SIZE];
+
+    // Looks for tables in the given directories, separated like a class path
+    public SyzygyTablebase(String paths) {
+        this.directories = paths.split(File.pathSeparator);
+        for (String directory : directories) {
+            File[] files = new File(directory).listFiles();
+            if (files == null) continue;
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.matches("K[QRBNP]*vK[QRBNP]*\\.rtbw")) continue;
+                String material = name.substring(0, name.length() - 5);
+                if (tables.containsKey(material) || material.length() - 1 > MAX_PIECES) continue;
+
+                Table table = new Table(material);
+                tables.put(material, table);
+                tables.put(table.mirrored, table);
+                maxPieces = Math.max(maxPieces, table.pieceCount);
+            }
+        }
+        this.probeLimit = maxPieces;
+    }
+
+    // Most pieces of any table found
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    // Positions with more pieces than this are not probed; defaults to getMaxPieces()
+    public void setProbeLimit(int pieces) {
+        this.probeLimit = Math.min(pieces, maxPieces);
+    }
+
+    public int getProbeLimit() {
+        return probeLimit;
+    }
+
+    // Whether a probe of the position could succeed: few enough pieces and no castling rights
+    public boolean canProbe(ChessBoard board) {
+        return board.getCastlingRights() == 0 && Long.bitCount(board.getOccupied()) <= probeLimit;
+    }
+
+    // WIN, CURSED_WIN, DRAW, BLESSED_LOSS or LOSS for the side to move, or PROBE_FAILED
+    public int probeWdl(ChessBoard board) {
+        if (!canProbe(board)) return PROBE_FAILED;
+
+        long key = board.getHash();
+        int index = (int) key & (CACHE_SIZE - 1);
+        long cached = cacheValues[index];
+        if ((cacheKeys[index] ^ cached) == key && cached != 0) return (int) cached - 3;
+
+        int[] state = {OK};
+        int wdl = search(board, state, false);
+        if (state[0] == FAIL) return PROBE_FAILED;
+
+        long value = wdl + 3; // Never 0, so an empty slot never matches
+        cacheValues[index] = value;
+        cacheKeys[index] = key ^ value;
+        return wdl;
+    }
+
+    // Like probeWdl, but counting the halfmove clock, which the tables take to be 0: a win or loss
+    // the fifty-move rule would cut short is a cursed win or blessed loss. Needs the DTZ tables to
+    // tell; without them it is the plain WDL.
+    public int probeWdlWithClock(ChessBoard board) {
+        int wdl = probeWdl(board);
+        if (wdl != WIN && wdl != LOSS) return wdl;
+        int dtz = probeDtz(board);
+        if (dtz == PROBE_FAILED || Math.abs(dtz) + board.getHalfmoveClock() <= 100) return wdl;
+        return wdl == WIN ? CURSED_WIN : BLESSED_LOSS;
+    }
+
+    // Plies to the next capture or pawn move with best play, signed like WDL (see probeDtz below),
+    // or PROBE_FAILED
+    public int probeDtz(ChessBoard board) {
+        if (!canProbe(board)) return PROBE_FAILED;
+        int[] state = {OK};
+        int dtz = probeDtz(board, state);
+        return state[0] == FAIL ? PROBE_FAILED : dtz;
+    }
+
+    // The best move by the DTZ tables, packed like Move.encode, or 0 if the position can't be probed
+    // or a DTZ table is missing. Wins are converted without letting the fifty-move rule intervene;
+    // losses are dragged out.
+    public int probeRoot(ChessBoard board) {
+        if (!canProbe(board)) return 0;
+
+        Player player = board.getSideToMove();
+        MoveList moves = new MoveList();
+        board.generateLegalMoves(player, moves);
+        if (moves.isEmpty()) return 0;
+
+        int halfmoveClock = board.getHalfmoveClock();
+        boolean repeated = board.isRepetition();
+        int[] state = {OK};
+        int bestMove = 0;
+        int bestRank = Integer.MIN_VALUE;
+        int bestDtz = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            int dtz;
+            if (board.getHalfmoveClock() == 0) {
+                dtz = dtzBeforeZeroing(-search(board, state, false));
+            } else if (board.getHalfmoveClock() >= 100 || board.isRepetition()) {
+                dtz = 0;
+            } else {
+                dtz = -probeDtz(board, state);
+                dtz = dtz > 0 ? dtz + 1 : dtz < 0 ? dtz - 1 : dtz;
+            }
+            // A mating move counts as one ply from zeroing
+            if (dtz == 2 && board.isInCheck(board.getSideToMove()) && !hasLegalMove(board)) dtz = 1;
+            board.unmakeMove();
+            if (state[0] == FAIL) return 0;
+
+            int rank = dtz > 0 ? (dtz + halfmoveClock <= 99 && !repeated ? MAX_DTZ : MAX_DTZ - (dtz + halfmoveClock))
+                : dtz < 0 ? (-dtz * 2 + halfmoveClock < 100 ? -MAX_DTZ : -MAX_DTZ + (-dtz + halfmoveClock))
+                : 0;
+            // Among equally ranked moves, win fastest and lose slowest
+            if (rank > bestRank || (rank == bestRank && (dtz > 0 ? dtz < bestDtz : dtz < 0 && dtz < bestDtz))) {
+                bestRank = rank;
+                bestDtz = dtz;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
+    // Without DTZ tables the tables can't say which move makes progress, only which moves keep the
+    // result: the others are removed from the root moves, and the search picks among the rest. A move
+    // that runs into the fifty-move rule or a repetition is a draw whatever the tables say; cursed wins
+    // and blessed losses rank between draws and real results. Returns false, leaving the moves as they
+    // were, if a probe fails.
+    public boolean filterRootMoves(ChessBoard board, MoveList moves) {
+        if (!canProbe(board) || moves.isEmpty()) return false;
+
+        int[] results = new int[moves.size()];
+        int bestWdl = LOSS;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            int wdl = board.getHalfmoveClock() >= 100 || board.isRepetition() ? DRAW : probeWdl(board);
+            board.unmakeMove();
+            if (wdl == PROBE_FAILED) return false;
+            results[i] = -wdl;
+            bestWdl = Math.max(bestWdl, -wdl);
+        }
+
+        int[] kept = new int[moves.size()];
+        int count = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            if (results[i] == bestWdl) kept[count++] = moves.get(i);
+        }
+        moves.clear();
+        for (int i = 0; i < count; i++) {
+            moves.add(kept[i]);
+        }
+        return true;
+    }
+
+    // The position's WDL, looking at captures (and pawn moves for DTZ) first: the tables store
+    // "don't care" values where such a move is the best one
+    private int search(ChessBoard board, int[] state, boolean checkZeroingMoves) {
+        int bestValue = LOSS;
+        MoveList moves = new MoveList();
+        board.generateLegalMoves(board.getSideToMove(), moves);
+        int moveCount = 0;
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (!Move.isCapture(move)
+                    && (!checkZeroingMoves || Move.movedPiece(move) % 6 != PieceType.PAWN.ordinal())) {
+                continue;
+            }
+            moveCount++;
+
+            board.makeMove(move);
+            int value = -search(board, state, false);
+            board.unmakeMove();
+            if (state[0] == FAIL) return DRAW;
+
+            if (value > bestValue) {
+                bestValue = value;
+                if (value >= WIN) {
+                    state[0] = ZEROING_BEST_MOVE;
+                    return value;
+                }
+            }
+        }
+
+        // If every legal move was searched the stored value may be wrong (e.g. with en passant)
+        boolean noMoreMoves = moveCount > 0 && moveCount == moves.size();
+        int value;
+        if (noMoreMoves) {
+            value = bestValue;
+        } else {
+            value = probeTable(board, WDL, DRAW, state);
+            if (state[0] == FAIL) return DRAW;
+        }
+
+        if (bestValue >= value) {
+            state[0] = bestValue > DRAW || noMoreMoves ? ZEROING_BEST_MOVE : OK;
+            return bestValue;
+        }
+        state[0] = OK;
+        return value;
+    }
+
+    //         n < -100 : loss, but draw under the fifty-move rule
+    // -100 <= n < -1   : loss in n plies (with the halfmove clock at 0)
+    //        -1        : the side to move is mated
+    //         0        : draw
+    //     1 < n <= 100 : win in n plies (with the halfmove clock at 0)
+    //   100 < n        : win, but draw under the fifty-move rule
+    // The value may be one ply off, as in the reference implementation.
+    private int probeDtz(ChessBoard board, int[] state) {
+        state[0] = OK;
+        int wdl = search(board, state, true);
+        if (state[0] == FAIL || wdl == DRAW) return 0;
+        if (state[0] == ZEROING_BEST_MOVE) return dtzBeforeZeroing(wdl);
+
+        int dtz = probeTable(board, DTZ, wdl, state);
+        if (state[0] == FAIL) return 0;
+        if (state[0] != CHANGE_STM) {
+            return (dtz + 100 * (wdl == BLESSED_LOSS || wdl == CURSED_WIN ? 1 : 0)) * Integer.signum(wdl);
+        }
+
+        // The table holds the other side to move: search one ply for the move with the best DTZ
+        int minDtz = 0xFFFF;
+        MoveList moves = new MoveList();
+        board.generateLegalMoves(board.getSideToMove(), moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            boolean zeroing = Move.isCapture(move) || Move.movedPiece(move) % 6 == PieceType.PAWN.ordinal();
+
+            board.makeMove(move);
+            dtz = zeroing ? -dtzBeforeZeroing(search(board, state, false)) : -probeDtz(board, state);
+            if (dtz == 1 && board.isInCheck(board.getSideToMove()) && !hasLegalMove(board)) minDtz = 1;
+            if (!zeroing) dtz += Integer.signum(dtz);
+            if (dtz < minDtz && Integer.signum(dtz) == Integer.signum(wdl)) minDtz = dtz;
+            board.unmakeMove();
+
+            if (state[0] == FAIL) return 0;
+        }
+        return minDtz == 0xFFFF ? -1 : minDtz;
+    }
+
+    // DTZ of the move before a capture or pawn move, which the tables don't store
+    private static int dtzBeforeZeroing(int wdl) {
+        switch (wdl) {
+            case WIN: return 1;
+            case CURSED_WIN: return 101;
+            case BLESSED_LOSS: return -101;
+            case LOSS: return -1;
+            default: return 0;
+        }
+    }
+
+    private static boolean hasLegalMove(ChessBoard board) {
+        MoveList moves = new MoveList();
+        board.generateLegalMoves(board.getSideToMove(), moves);
+        return !moves.isEmpty();
+    }
+
+    private int probeTable(ChessBoard board, int type, int wdl, int[] state) {
+        if (Long.bitCount(board.getOccupied()) == 2) return DRAW; // Bare kings
+
+        String material = material(board, Player.WHITE) + "v" + material(board, Player.BLACK);
+        Table table = tables.get(material);
+        TableFile file = table == null ? null : table.file(type);
+        if (file == null || !file.ensureMapped(directories)) {
+            state[0] = FAIL;
+            return 0;
+        }
+        return file.probe(board, !material.equals(table.name), wdl, state);
+    }
+
+    // Pieces of one side in file name order, e.g. "KRP"
+    private static String material(ChessBoard board, Player player) {
+        StringBuilder pieces = new StringBuilder();
+        for (int type = 5; type >= 0; type--) {
+            int count = Long.bitCount(board.getPieces(player, PieceType.values()[type]));
+            for (int i = 0; i < count; i++) {
+                pieces.append(PIECE_LETTERS.charAt(type));
+            }
+        }
+        return pieces.toString();
+    }
+
+    // Rank minus file: 0 on the a1-h8 diagonal, negative below it
+    private static int offDiagonal(int square) {
+        return Bitboards.row(square) - Bitboards.col(square);
+    }
+
+    // One material combination, e.g. KRvK, covering both colour assignments
+    private static final class Table {
+        final String name;
+        final String mirrored;
+        final int pieceCount;
+        final boolean hasPawns;
+        final boolean hasUniquePieces;
+        final boolean symmetric;
+        final int[] pawnCount = new int[2]; // Leading colour, other colour
+        private final TableFile wdl;
+        private final TableFile dtz;
+
+        Table(String name) {
+            this.name = name;
+            String white = name.substring(0, name.indexOf('v'));
+            String black = name.substring(name.indexOf('v') + 1);
+            this.mirrored = black + "v" + white;
+            this.symmetric = white.equals(black);
+            this.pieceCount = white.length() + black.length();
+            this.hasPawns = name.indexOf('P') >= 0;
+
+            boolean unique = false;
+            for (String side : new String[] {white, black}) {
+                for (char piece : "QRBNP".toCharArray()) {
+                    if (side.indexOf(piece) >= 0 && side.indexOf(piece) == side.lastIndexOf(piece)) unique = true;
+                }
+            }
+            this.hasUniquePieces = unique;
+
+            // The side with fewer pawns leads, as that compresses better
+            int whitePawns = count(white, 'P');
+            int blackPawns = count(black, 'P');
+            boolean whiteLeads = blackPawns == 0 || (whitePawns > 0 && blackPawns >= whitePawns);
+            pawnCount[0] = whiteLeads ? whitePawns : blackPawns;
+            pawnCount[1] = whiteLeads ? blackPawns : whitePawns;
+
+            this.wdl = new TableFile(this, WDL);
+            this.dtz = new TableFile(this, DTZ);
+        }
+
+        TableFile file(int type) {
+            return type == WDL ? wdl : dtz;
+        }
+
+        private static int count(String pieces, char piece) {
+            int count = 0;
+            for (char c : pieces.toCharArray()) {
+                if (c == piece) count++;
+            }
+            return count;
+        }
+    }
+
+    // Decoding parameters for one sub-table: one side to move and, with pawns, one leading file
+    private static final class PairsData {
+        int flags;
+        int maxSymLen;
+        int minSymLen;
+        long numBlocks;
+        long sizeofBlock;
+        long span;
+        int lowestSym; // Offsets into the mapped file
+        int btree;
+        long blockLengthSize;
+        int blockLength;
+        long sparseIndexSize;
+        int sparseIndex;
+        int data;
+        long[] base64;
+        int[] symlen;
+        final int[] pieces = new int[MAX_PIECES];
+        final long[] groupIdx = new long[MAX_PIECES + 1];
+        final int[] groupLen = new int[MAX_PIECES + 1];
+        final int[] mapIdx = new int[4];
+    }
+
+    // A .rtbw or .rtbz file, mapped and parsed on first use
+    private static final class TableFile {
+        private final Table table;
+        private final int type;
+        private final int sides;
+        private volatile boolean ready;
+        private boolean available;
+        private MappedByteBuffer buffer;
+        private PairsData[][] items; // [side to move][leading file]
+        private int map; // DTZ value maps
+
+        TableFile(Table table, int type) {
+            this.table = table;
+            this.type = type;
+            this.sides = type == WDL && !table.symmetric ? 2 : 1;
+        }
+
+        PairsData get(int stm, int file) {
+            return items[stm % sides][table.hasPawns ? file : 0];
+        }
+
+        boolean ensureMapped(String[] directories) {
+            if (!ready) {
+                synchronized (this) {
+                    if (!ready) {
+                        available = map(directories);
+                        ready = true;
+                    }
+                }
+            }
+            return available;
+        }
+
+        private boolean map(String[] directories) {
+            String fileName = table.name + (type == WDL ? ".rtbw" : ".rtbz");
+            for (String directory : directories) {
+                Path path = Path.of(directory, fileName);
+                if (!path.toFile().isFile()) continue;
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    // Positions are int offsets, so files of 2 GB and more (some 7-piece tables) are skipped
+                    if (channel.size() > Integer.MAX_VALUE || channel.size() < 16) return false;
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                } catch (IOException e) {
+                    return false;
+                }
+                for (int i = 0; i < 4; i++) {
+                    if (buffer.get(i) != MAGIC[type][i]) return false;
+                }
+                parse(4);
+                return true;
+            }
+            return false;
+        }
+
+        private int u8(int offset) {
+            return buffer.get(offset) & 0xFF;
+        }
+
+        private int u16(int offset) {
+            return buffer.getShort(offset) & 0xFFFF;
+        }
+
+        private long u32(int offset) {
+            return buffer.getInt(offset) & 0xFFFFFFFFL;
+        }
+
+        private void parse(int data) {
+            data++; // Flags: split by side to move, has pawns; both known from the name
+            int maxFile = table.hasPawns ? 3 : 0;
+            boolean pp = table.hasPawns && table.pawnCount[1] > 0; // Pawns on both sides
+            items = new PairsData[sides][maxFile + 1];
+
+            for (int file = 0; file <= maxFile; file++) {
+                for (int i = 0; i < sides; i++) {
+                    items[i][file] = new PairsData();
+                }
+                int first = u8(data);
+                int second = pp ? u8(data + 1) : 0;
+                int[][] order = {
+                    {first & 0xF, pp ? second & 0xF : 0xF},
+                    {first >>> 4, pp ? second >>> 4 : 0xF}
+                };
+                data += 1 + (pp ? 1 : 0);
+
+                for (int k = 0; k < table.pieceCount; k++, data++) {
+                    for (int i = 0; i < sides; i++) {
+                        items[i][file].pieces[k] = i == 1 ? u8(data) >>> 4 : u8(data) & 0xF;
+                    }
+                }
+                for (int i = 0; i < sides; i++) {
+                    setGroups(items[i][file], order[i], file);
+                }
+            }
+            data += data & 1;
+
+            for (int file = 0; file <= maxFile; file++) {
+                for (int i = 0; i < sides; i++) {
+                    data = setSizes(items[i][file], data);
+                }
+            }
+            if (type == DTZ) data = setDtzMap(data, maxFile);
+
+            for (int file = 0; file <= maxFile; file++) {
+                for (int i = 0; i < sides; i++) {
+                    items[i][file].sparseIndex = data;
+                    data += (int) (items[i][file].sparseIndexSize * 6);
+                }
+            }
+            for (int file = 0; file <= maxFile; file++) {
+                for (int i = 0; i < sides; i++) {
+                    items[i][file].blockLength = data;
+                    data += (int) (items[i][file].blockLengthSize * 2);
+                }
+            }
+            for (int file = 0; file <= maxFile; file++) {
+                for (int i = 0; i < sides; i++) {
+                    data = (data + 0x3F) & ~0x3F; // Blocks start on 64-byte boundaries
+                    items[i][file].data = data;
+                    data += (int) (items[i][file].numBlocks * items[i][file].sizeofBlock);
+                }
+            }
+        }
+
+        // Works out which pieces are encoded together and the multiplier of each group in the index
+        private void setGroups(PairsData d, int[] order, int file) {
+            int n = 0;
+            int firstLen = table.hasPawns ? 0 : table.hasUniquePieces ? 3 : 2;
+            d.groupLen[n] = 1;
+            for (int i = 1; i < table.pieceCount; i++) {
+                if (--firstLen > 0 || d.pieces[i] == d.pieces[i - 1]) {
+                    d.groupLen[n]++;
+                } else {
+                    d.groupLen[++n] = 1;
+                }
+            }
+            d.groupLen[++n] = 0;
+
+            boolean pp = table.hasPawns && table.pawnCount[1] > 0;
+            int next = pp ? 2 : 1;
+            int freeSquares = 64 - d.groupLen[0] - (pp ? d.groupLen[1] : 0);
+            long idx = 1;
+            for (int k = 0; next < n || k == order[0] || k == order[1]; k++) {
+                if (k == order[0]) {
+                    d.groupIdx[0] = idx;
+                    idx *= table.hasPawns ? LEAD_PAWNS_SIZE[d.groupLen[0]][file] : table.hasUniquePieces ? 31332 : 462;
+                } else if (k == order[1]) {
+                    d.groupIdx[1] = idx;
+                    idx *= BINOMIAL[d.groupLen[1]][48 - d.groupLen[0]];
+                } else {
+                    d.groupIdx[next] = idx;
+                    idx *= BINOMIAL[d.groupLen[next]][freeSquares];
+                    freeSquares -= d.groupLen[next++];
+                }
+            }
+            d.groupIdx[n] = idx;
+        }
+
+        private int setSizes(PairsData d, int data) {
+            d.flags = u8(data++);
+            if ((d.flags & FLAG_SINGLE_VALUE) != 0) {
+                d.minSymLen = u8(data++); // The single value
+                return data;
+            }
+
+            int groups = 0;
+            while (d.groupLen[groups] != 0) groups++;
+            long tableSize = d.groupIdx[groups];
+
+            d.sizeofBlock = 1L << u8(data++);
+            d.span = 1L << u8(data++);
+            d.sparseIndexSize = (tableSize + d.span - 1) / d.span;
+            int padding = u8(data++);
+            d.numBlocks = u32(data);
+            data += 4;
+            d.blockLengthSize = d.numBlocks + padding;
+            d.maxSymLen = u8(data++);
+            d.minSymLen = u8(data++);
+            d.lowestSym = data;
+
+            // Canonical Huffman: base64[l] is the lowest code of length minSymLen + l, left-aligned
+            // in 64 bits, so a code's length is found by comparing against these
+            int lengths = d.maxSymLen - d.minSymLen + 1;
+            d.base64 = new long[lengths];
+            for (int i = lengths - 2; i >= 0; i--) {
+                d.base64[i] = (d.base64[i + 1] + u16(d.lowestSym + 2 * i) - u16(d.lowestSym + 2 * (i + 1))) / 2;
+            }
+            for (int i = 0; i < lengths; i++) {
+                int shift = 64 - i - d.minSymLen;
+                d.base64[i] = shift >= 64 ? 0 : d.base64[i] << shift;
+            }
+            data += lengths * 2;
+
+            int symbols = u16(data);
+            data += 2;
+            d.btree = data;
+            d.symlen = new int[symbols];
+            boolean[] visited = new boolean[symbols];
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                if (!visited[symbol]) d.symlen[symbol] = setSymlen(d, symbol, visited);
+            }
+            return data + symbols * 3 + (symbols & 1);
+        }
+
+        // Number of values, minus one, that a symbol expands to under recursive pairing
+        private int setSymlen(PairsData d, int symbol, boolean[] visited) {
+            visited[symbol] = true;
+            int right = right(d, symbol);
+            if (right == 0xFFF) return 0;
+
+            int left = left(d, symbol);
+            if (!visited[left]) d.symlen[left] = setSymlen(d, left, visited);
+            if (!visited[right]) d.symlen[right] = setSymlen(d, right, visited);
+            return d.symlen[left] + d.symlen[right] + 1;
+        }
+
+        private int left(PairsData d, int symbol) {
+            int entry = d.btree + symbol * 3;
+            return ((u8(entry + 1) & 0xF) << 8) | u8(entry);
+        }
+
+        private int right(PairsData d, int symbol) {
+            int entry = d.btree + symbol * 3;
+            return (u8(entry + 2) << 4) | (u8(entry + 1) >>> 4);
+        }
+
+        private int setDtzMap(int data, int maxFile) {
+            map = data;
+            for (int file = 0; file <= maxFile; file++) {
+                PairsData d = get(0, file);
+                if ((d.flags & FLAG_MAPPED) == 0) continue;
+                if ((d.flags & FLAG_WIDE) != 0) {
+                    data += data & 1;
+                    for (int i = 0; i < 4; i++) {
+                        d.mapIdx[i] = (data - map) / 2 + 1;
+                        data += 2 * u16(data) + 2;
+                    }
+                } else {
+                    for (int i = 0; i < 4; i++) {
+                        d.mapIdx[i] = data - map + 1;
+                        data += u8(data) + 1;
+                    }
+                }
+            }
+            return data + (data & 1);
+        }
+
+        // Looks up the position, given whether the colours must be swapped to match the table
+        int probe(ChessBoard board, boolean blackStronger, int wdl, int[] state) {
+            boolean symmetricBlackToMove = table.symmetric && board.getSideToMove() == Player.BLACK;
+            boolean flip = symmetricBlackToMove || blackStronger;
+            int flipColor = flip ? 8 : 0;
+            int flipSquares = flip ? 56 : 0;
+            int stm = (flip ? 1 : 0) ^ (board.getSideToMove() == Player.BLACK ? 1 : 0);
+
+            // Pieces in the tables' code: pawn to king are 1-6 for white and 9-14 for black
+            int[] codes = new int[64];
+            for (int piece = 0; piece < 12; piece++) {
+                Player player = piece < 6 ? Player.WHITE : Player.BLACK;
+                for (long bits = board.getPieces(player, PieceType.values()[piece % 6]); bits != 0; bits &= bits - 1) {
+                    codes[Long.numberOfTrailingZeros(bits)] = piece % 6 + 1 + (piece / 6) * 8;
+                }
+            }
+
+            int[] squares = new int[MAX_PIECES];
+            int[] pieces = new int[MAX_PIECES];
+            int size = 0;
+            int leadPawnCount = 0;
+            long leadPawns = 0;
+            int file = 0;
+
+            // With pawns there is a sub-table per file of the leading pawn, the one with the
+            // highest MAP_PAWNS value
+            if (table.hasPawns) {
+                int pawn = get(0, 0).pieces[0] ^ flipColor;
+                Player color = pawn < 8 ? Player.WHITE : Player.BLACK;
+                leadPawns = board.getPieces(color, PieceType.PAWN);
+                for (long bits = leadPawns; bits != 0; bits &= bits - 1) {
+                    squares[size++] = Long.numberOfTrailingZeros(bits) ^ flipSquares;
+                }
+                leadPawnCount = size;
+
+                int lead = 0;
+                for (int i = 1; i < leadPawnCount; i++) {
+                    if (MAP_PAWNS[squares[i]] > MAP_PAWNS[squares[lead]]) lead = i;
+                }
+                swap(squares, 0, lead);
+                int col = Bitboards.col(squares[0]);
+                file = Math.min(col, 7 - col);
+            }
+
+            if (type == DTZ) {
+                int flags = get(stm, file).flags;
+                if ((flags & FLAG_STM) != stm && !(table.symmetric && !table.hasPawns)) {
+                    state[0] = CHANGE_STM;
+                    return 0;
+                }
+            }
+
+            for (long bits = board.getOccupied() & ~leadPawns; bits != 0; bits &= bits - 1) {
+                int square = Long.numberOfTrailingZeros(bits);
+                squares[size] = square ^ flipSquares;
+                pieces[size++] = codes[square] ^ flipColor;
+            }
+
+            PairsData d = get(stm, file);
+
+            // Put the pieces in the table's order
+            for (int i = leadPawnCount; i < size - 1; i++) {
+                for (int j = i + 1; j < size; j++) {
+                    if (d.pieces[i] == pieces[j]) {
+                        swap(pieces, i, j);
+                        swap(squares, i, j);
+                        break;
+                    }
+                }
+            }
+
+            // Mirror so the leading piece is on files a-d
+            if (Bitboards.col(squares[0]) > 3) {
+                for (int i = 0; i < size; i++) {
+                    squares[i] ^= 7;
+                }
+            }
+
+            long idx;
+            if (table.hasPawns) {
+                idx = LEAD_PAWN_IDX[leadPawnCount][squares[0]];
+                // Remaining leading pawns in ascending MAP_PAWNS order; insertion sort keeps ties stable
+                for (int i = 2; i < leadPawnCount; i++) {
+                    for (int j = i; j > 1 && MAP_PAWNS[squares[j]] < MAP_PAWNS[squares[j - 1]]; j--) {
+                        swap(squares, j, j - 1);
+                    }
+                }
+                for (int i = 1; i < leadPawnCount; i++) {
+                    idx += BINOMIAL[i][MAP_PAWNS[squares[i]]];
+                }
+            } else {
+                // Without pawns also mirror to ranks 1-4, then about the a1-h8 diagonal so the first
+                // leading piece off the diagonal is below it
+                if (Bitboards.row(squares[0]) > 3) {
+                    for (int i = 0; i < size; i++) {
+                        squares[i] ^= 56;
+                    }
+                }
+                for (int i = 0; i < d.groupLen[0]; i++) {
+                    if (offDiagonal(squares[i]) == 0) continue;
+                    if (offDiagonal(squares[i]) > 0) {
+                        for (int j = i; j < size; j++) {
+                            squares[j] = ((squares[j] >>> 3) | (squares[j] << 3)) & 63;
+                        }
+                    }
+                    break;
+                }
+
+                if (table.hasUniquePieces) {
+                    int adjust1 = squares[1] > squares[0] ? 1 : 0;
+                    int adjust2 = (squares[2] > squares[0] ? 1 : 0) + (squares[2] > squares[1] ? 1 : 0);
+                    if (offDiagonal(squares[0]) != 0) {
+                        idx = (MAP_A1D1D4[squares[0]] * 63L + (squares[1] - adjust1)) * 62 + squares[2] - adjust2;
+                    } else if (offDiagonal(squares[1]) != 0) {
+                        idx = (6 * 63L + Bitboards.row(squares[0]) * 28 + MAP_B1H1H7[squares[1]]) * 62
+                            + squares[2] - adjust2;
+                    } else if (offDiagonal(squares[2]) != 0) {
+                        idx = 6 * 63 * 62 + 4 * 28 * 62 + Bitboards.row(squares[0]) * 7 * 28
+                            + (Bitboards.row(squares[1]) - adjust1) * 28 + MAP_B1H1H7[squares[2]];
+                    } else {
+                        idx = 6 * 63 * 62 + 4 * 28 * 62 + 4 * 7 * 28 + Bitboards.row(squares[0]) * 7 * 6
+                            + (Bitboards.row(squares[1]) - adjust1) * 6 + (Bitboards.row(squares[2]) - adjust2);
+                    }
+                } else {
+                    idx = MAP_KK[MAP_A1D1D4[squares[0]]][squares[1]];
+                }
+            }
+
+            // The other groups: each a combination of squares not taken by earlier groups
+            idx *= d.groupIdx[0];
+            int groupStart = d.groupLen[0];
+            boolean remainingPawns = table.hasPawns && table.pawnCount[1] > 0;
+            for (int next = 1; d.groupLen[next] != 0; next++) {
+                int length = d.groupLen[next];
+                java.util.Arrays.sort(squares, groupStart, groupStart + length);
+                long n = 0;
+                for (int i = 0; i < length; i++) {
+                    int square = squares[groupStart + i];
+                    int adjust = 0;
+                    for (int j = 0; j < groupStart; j++) {
+                        if (square > squares[j]) adjust++;
+                    }
+                    n += BINOMIAL[i + 1][square - adjust - (remainingPawns ? 8 : 0)];
+                }
+                remainingPawns = false;
+                idx += n * d.groupIdx[next];
+                groupStart += length;
+            }
+
+            return mapScore(file, decompress(d, idx), wdl);
+        }
+
+        private int mapScore(int file, int value, int wdl) {
+            if (type == WDL) return value - 2;
+
+            int[] wdlMap = {1, 3, 0, 2, 0};
+            PairsData d = get(0, file);
+            int flags = d.flags;
+            if ((flags & FLAG_MAPPED) != 0) {
+                int index = d.mapIdx[wdlMap[wdl + 2]] + value;
+                value = (flags & FLAG_WIDE) != 0 ? u16(map + 2 * index) : u8(map + index);
+            }
+
+            // Stored in moves unless the flags say plies; we always return plies
+            if ((wdl == WIN && (flags & FLAG_WIN_PLIES) == 0) || (wdl == LOSS && (flags & FLAG_LOSS_PLIES) == 0)
+                    || wdl == CURSED_WIN || wdl == BLESSED_LOSS) {
+                value *= 2;
+            }
+            return value + 1;
+        }
+
+        // Finds the value at idx: locate its block through the sparse index, then walk the block's
+        // Huffman codes and expand the symbol that covers idx down to a single value
+        private int decompress(PairsData d, long idx) {
+            if ((d.flags & FLAG_SINGLE_VALUE) != 0) return d.minSymLen;
+
+            int k = (int) (idx / d.span);
+            int block = buffer.getInt(d.sparseIndex + 6 * k);
+            long offset = u16(d.sparseIndex + 6 * k + 4);
+            offset += idx % d.span - d.span / 2;
+
+            while (offset < 0) {
+                offset += u16(d.blockLength + 2 * --block) + 1;
+            }
+            while (offset > u16(d.blockLength + 2 * block)) {
+                offset -= u16(d.blockLength + 2 * block++) + 1;
+            }
+
+            int ptr = (int) (d.data + (long) block * d.sizeofBlock);
+            long buf64 = Long.reverseBytes(buffer.getLong(ptr)); // Codes are big-endian
+            ptr += 8;
+            int buf64Size = 64;
+            int symbol;
+            while (true) {
+                int length = 0;
+                while (Long.compareUnsigned(buf64, d.base64[length]) < 0) length++;
+
+                symbol = (int) ((buf64 - d.base64[length]) >>> (64 - length - d.minSymLen));
+                symbol = (symbol + u16(d.lowestSym + 2 * length)) & 0xFFFF;
+                if (offset < d.symlen[symbol] + 1) break;
+
+                offset -= d.symlen[symbol] + 1;
+                length += d.minSymLen;
+                buf64 <<= length;
+                buf64Size -= length;
+                if (buf64Size <= 32) {
+                    buf64Size += 32;
+                    buf64 |= (Integer.reverseBytes(buffer.getInt(ptr)) & 0xFFFFFFFFL) << (64 - buf64Size);
+                    ptr += 4;
+                }
+            }
+
+            while (d.symlen[symbol] != 0) {
+                int left = left(d, symbol);
+                if (offset < d.symlen[left] + 1) {
+                    symbol = left;
+                } else {
+                    offset -= d.symlen[left] + 1;
+                    symbol = right(d, symbol);
+                }
+            }
+            return left(d, symbol);
+        }
+
+        private static void swap(int[] values, int i, int j) {
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+}
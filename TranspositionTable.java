@@ -0,0 +1,79 @@
+import java.util.Arrays;
+
+// Fixed-size hash table of search results, indexed by Zobrist key.
+// Each entry is two longs: a packed word holding move, score, depth and bound, and the key XORed
+// with that word. Search threads share the table without locks; an entry torn by two threads
+// writing at once no longer XORs back to its key, so it just reads as a miss.
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2; // Failed high: the score is at least this
+    public static final int UPPER_BOUND = 3; // Failed low: the score is at most this
+
+    private static final int ENTRY_BYTES = 16;
+
+    private long[] keys;
+    private long[] data;
+    private int mask;
+
+    public TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    // Rounds the entry count down to a power of two so the index is a simple mask
+    public void resize(int megabytes) {
+        long entries = Math.max(1L, (long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    // Returns the packed entry for the key, or 0 if there is none
+    public long probe(long key) {
+        int index = (int) key & mask;
+        long entry = data[index];
+        return (keys[index] ^ entry) == key ? entry : 0L;
+    }
+
+    // Depth-preferred replacement: keep a deeper result for the same position unless the new one is exact
+    // Only the low bits of the move that identify it within the position are kept (Move.CODE_MASK)
+    public void store(long key, int depth, int bound, int score, int move) {
+        int index = (int) key & mask;
+        long existing = data[index];
+        if ((keys[index] ^ existing) == key && existing != 0 && bound != EXACT && depth < depth(existing)) {
+            return;
+        }
+        long entry = pack(depth, bound, score, move);
+        keys[index] = key ^ entry;
+        data[index] = entry;
+    }
+
+    // Layout: move in bits 0-15, score in bits 16-47, depth in bits 48-55, bound in bits 56-57
+    private static long pack(int depth, int bound, int score, int move) {
+        return (move & Move.CODE_MASK)
+            | ((score & 0xFFFFFFFFL) << 16)
+            | ((long) (depth & 0xFF) << 48)
+            | ((long) bound << 56);
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int score(long entry) {
+        return (int) (entry >>> 16);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 48) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 56) & 0x3;
+    }
+}
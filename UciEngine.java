@@ -0,0 +1,398 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Universal Chess Interface front end over stdin/stdout, for GUIs, tournament managers and services:
+//
+//   java UciEngine
+//
+// Commands are read on the main thread while the search runs on a single background thread, so stop
+// and ponderhit take effect during a search. Nothing but the engine's own classes is loaded, the
+// hash table defaults to 16 MB and one thread, so many instances fit on one host.
+public class UciEngine {
+    private static final String NAME = "ChessJava";
+    private static final int MAX_HASH_MB = 4096;
+    private static final int MAX_THREADS = 256;
+    private static final long MOVE_OVERHEAD_MS = 30; // Kept back from the clock for communication lag
+    private static final int DEFAULT_MOVES_TO_GO = 30; // Moves the remaining time is spread over in sudden death
+    private static final int TABLEBASE_WIN_CP = 20_000; // Reported for a tablebase win at the root, as Stockfish does
+
+    private final Minimax minimax = new Minimax();
+    private ChessBoard board = new ChessBoard(ChessBoard.START_FEN);
+
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "uci-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean searching; // From go until bestmove has been sent
+    private volatile Thread searchThread; // Running a search, or null
+    private volatile boolean stopRequested;
+    private volatile boolean ponderHit;
+    private volatile long ponderBudget; // Milliseconds the ponder search gets once the expected move is played
+    private volatile boolean ponderLimited; // The ponder search has a depth or node limit to run to after ponderhit
+    private volatile long ponderHitDeadline; // System.nanoTime() by which a ponder search turned normal must end
+    private boolean waitForStop; // infinite or ponder: bestmove only after stop or ponderhit
+    private final Object searchLock = new Object();
+
+    private String bookFile;
+    private String syzygyPath;
+    private int syzygyProbeLimit = 7;
+
+    public static void main(String[] args) throws IOException {
+        new UciEngine().run(new BufferedReader(new InputStreamReader(System.in)));
+    }
+
+    public UciEngine() {
+        minimax.setSearchListener(new SearchListener() {
+            @Override
+            public void iterationCompleted(SearchStats stats) {
+                if (stats.getThread() != 0) return;
+                applyPonderHit(); // In case ponderhit arrived before the search had set its limits
+                sendInfo(stats);
+            }
+        });
+    }
+
+    public void run(BufferedReader input) throws IOException {
+        String line;
+        while ((line = input.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            switch (tokens[0]) {
+                case "uci":
+                    send("id name " + NAME);
+                    send("id author ChessJava contributors");
+                    send("option name Hash type spin default 16 min 1 max " + MAX_HASH_MB);
+                    send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                    send("option name Ponder type check default false");
+                    send("option name BookFile type string default <empty>");
+                    send("option name SyzygyPath type string default <empty>");
+                    send("option name SyzygyProbeLimit type spin default 7 min 0 max 7");
+                    send("uciok");
+                    break;
+                case "isready":
+                    send("readyok");
+                    break;
+                case "setoption":
+                    setOption(line);
+                    break;
+                case "ucinewgame":
+                    awaitSearch();
+                    minimax.clearHash();
+                    break;
+                case "position":
+                    setPosition(tokens); // The search runs on its own copy
+                    break;
+                case "go":
+                    awaitSearch();
+                    go(tokens);
+                    break;
+                case "stop":
+                    stopSearch();
+                    break;
+                case "ponderhit":
+                    ponderHit();
+                    break;
+                case "quit":
+                    stopSearch();
+                    return;
+                default:
+                    if (!tokens[0].isEmpty()) send("info string Unknown command: " + line.trim());
+                    break;
+            }
+        }
+        stopSearch();
+    }
+
+    // setoption name <id> [value <x>]; names may contain spaces
+    private void setOption(String line) {
+        int nameAt = line.indexOf(" name ");
+        if (nameAt < 0) return;
+        int valueAt = line.indexOf(" value ");
+        String name = (valueAt > nameAt ? line.substring(nameAt + 6, valueAt) : line.substring(nameAt + 6)).trim();
+        String value = valueAt > nameAt ? line.substring(valueAt + 7).trim() : "";
+        awaitSearch();
+
+        try {
+            switch (name.toLowerCase()) {
+                case "hash":
+                    minimax.setHashSize(Math.max(1, Math.min(MAX_HASH_MB, Integer.parseInt(value))));
+                    break;
+                case "threads":
+                    minimax.setThreads(Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value))));
+                    break;
+                case "ponder":
+                    break; // Pondering is driven by go ponder; nothing to set up
+                case "bookfile":
+                    bookFile = optionPath(value);
+                    loadBook();
+                    break;
+                case "syzygypath":
+                    syzygyPath = optionPath(value);
+                    loadTablebases();
+                    break;
+                case "syzygyprobelimit":
+                    syzygyProbeLimit = Integer.parseInt(value);
+                    loadTablebases();
+                    break;
+                default:
+                    send("info string Unknown option: " + name);
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            send("info string Bad value for " + name + ": " + value);
+        }
+    }
+
+    private static String optionPath(String value) {
+        return value.isEmpty() || value.equals("<empty>") ? null : value;
+    }
+
+    private void loadBook() {
+        minimax.setOpeningBook(null);
+        if (bookFile == null) return;
+        try {
+            minimax.setOpeningBook(new PolyglotBook(Paths.get(bookFile)));
+        } catch (IOException e) {
+            send("info string Opening book not loaded: " + e.getMessage());
+        }
+    }
+
+    private void loadTablebases() {
+        minimax.setTablebase(null);
+        if (syzygyPath == null) return;
+        SyzygyTablebase tablebase = new SyzygyTablebase(syzygyPath);
+        if (tablebase.getMaxPieces() == 0) {
+            send("info string No Syzygy tables found in " + syzygyPath);
+            return;
+        }
+        tablebase.setProbeLimit(syzygyProbeLimit);
+        minimax.setTablebase(tablebase);
+        send("info string Syzygy tables with up to " + tablebase.getMaxPieces() + " pieces found");
+    }
+
+    // position [startpos | fen <fen>] [moves <move>...]
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        ChessBoard position;
+        try {
+            if (tokens.length > 1 && tokens[1].equals("fen")) {
+                StringBuilder fen = new StringBuilder();
+                for (i = 2; i < tokens.length && !tokens[i].equals("moves"); i++) {
+                    fen.append(tokens[i]).append(' ');
+                }
+                position = new ChessBoard(fen.toString().trim());
+            } else {
+                position = new ChessBoard(ChessBoard.START_FEN);
+                i = 2;
+            }
+        } catch (IllegalArgumentException e) {
+            send("info string Bad position: " + e.getMessage());
+            return;
+        }
+
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                int move = findMove(position, tokens[i]);
+                if (move == 0) {
+                    send("info string Illegal move: " + tokens[i]);
+                    break;
+                }
+                position.makeMove(move);
+            }
+        }
+        board = position;
+    }
+
+    // The legal move written in long algebraic notation, or 0
+    private static int findMove(ChessBoard position, String text) {
+        MoveList moves = new MoveList();
+        position.generateLegalMoves(position.getSideToMove(), moves);
+        for (int i = 0; i < moves.size(); i++) {
+            if (Move.toString(moves.get(i)).equals(text)) return moves.get(i);
+        }
+        return 0;
+    }
+
+    // go [ponder] [wtime <ms>] [btime <ms>] [winc <ms>] [binc <ms>] [movestogo <n>] [depth <n>]
+    //    [nodes <n>] [movetime <ms>] [infinite]
+    private void go(String[] tokens) {
+        long time = 0, increment = 0, moveTime = 0, nodes = 0;
+        int movesToGo = 0;
+        int depth = Integer.MAX_VALUE;
+        boolean infinite = false, ponder = false;
+        boolean white = board.getSideToMove() == Player.WHITE;
+
+        for (int i = 1; i < tokens.length; i++) {
+            try {
+                switch (tokens[i]) {
+                    case "wtime": if (white) time = Long.parseLong(tokens[i + 1]); i++; break;
+                    case "btime": if (!white) time = Long.parseLong(tokens[i + 1]); i++; break;
+                    case "winc": if (white) increment = Long.parseLong(tokens[i + 1]); i++; break;
+                    case "binc": if (!white) increment = Long.parseLong(tokens[i + 1]); i++; break;
+                    case "movestogo": movesToGo = Integer.parseInt(tokens[++i]); break;
+                    case "depth": depth = Integer.parseInt(tokens[++i]); break;
+                    case "nodes": nodes = Long.parseLong(tokens[++i]); break;
+                    case "movetime": moveTime = Long.parseLong(tokens[++i]); break;
+                    case "infinite": infinite = true; break;
+                    case "ponder": ponder = true; break;
+                    default: break;
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                send("info string Bad go parameter: " + tokens[i]);
+            }
+        }
+
+        long budget = moveTime > 0 ? moveTime : time > 0 ? timeBudget(time, increment, movesToGo) : 0;
+        // A bare "go" searches until stop, like "go infinite"
+        boolean unlimited = ponder || infinite || (budget == 0 && nodes == 0 && depth == Integer.MAX_VALUE);
+
+        ChessBoard position = new ChessBoard(board);
+        Player player = position.getSideToMove();
+        int maxDepth = depth;
+        long nodeLimit = nodes;
+        synchronized (searchLock) {
+            stopRequested = false;
+            ponderHit = false;
+            ponderHitDeadline = 0;
+            ponderBudget = budget;
+            ponderLimited = depth != Integer.MAX_VALUE || nodes > 0;
+            waitForStop = unlimited;
+            searching = true;
+        }
+        searchExecutor.execute(() -> {
+            searchThread = Thread.currentThread();
+            try {
+                if (stopRequested) Thread.currentThread().interrupt(); // stop came before the search could see it
+                // A ponder or infinite search has no clock until ponderhit sets it, but keeps to depth and nodes
+                Move best = unlimited ? minimax.ponder(position, player, maxDepth, nodeLimit)
+                    : minimax.findBestMove(position, player, maxDepth, budget, nodeLimit);
+                awaitStopOrPonderHit();
+                sendBestMove(best);
+            } finally {
+                synchronized (searchLock) {
+                    searchThread = null;
+                    searching = false;
+                    searchLock.notifyAll();
+                }
+            }
+        });
+    }
+
+    // A share of the remaining time, plus most of the increment, never running the clock out
+    private static long timeBudget(long time, long increment, int movesToGo) {
+        int moves = movesToGo > 0 ? Math.min(movesToGo, DEFAULT_MOVES_TO_GO) : DEFAULT_MOVES_TO_GO;
+        long budget = time / moves + increment * 3 / 4;
+        return Math.max(1, Math.min(budget, time - MOVE_OVERHEAD_MS));
+    }
+
+    private void stopSearch() {
+        synchronized (searchLock) {
+            stopRequested = true;
+            searchLock.notifyAll();
+        }
+        minimax.stop();
+        Thread thread = searchThread;
+        if (thread != null) thread.interrupt(); // Also covers a search that hasn't reset its stop flag yet
+    }
+
+    private void ponderHit() {
+        synchronized (searchLock) {
+            ponderHit = true;
+            ponderHitDeadline = System.nanoTime() + ponderBudget * 1_000_000L;
+            waitForStop = false;
+            searchLock.notifyAll();
+        }
+        applyPonderHit();
+    }
+
+    // Gives a ponder search the time it would have had as a normal search from the ponderhit on
+    private void applyPonderHit() {
+        if (!ponderHit) return;
+        long remaining = (ponderHitDeadline - System.nanoTime()) / 1_000_000L;
+        if (ponderBudget > 0) {
+            minimax.ponderHit(Math.max(0, remaining));
+        } else if (!ponderLimited) {
+            minimax.stop(); // Pondering without a clock: the expected move came, so answer now
+        }
+    }
+
+    // bestmove must not be sent for an infinite or ponder search until the GUI asks for it
+    private void awaitStopOrPonderHit() {
+        synchronized (searchLock) {
+            while (waitForStop && !stopRequested) {
+                try {
+                    searchLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Commands that change the settings or start a search wait for a running search to end. An
+    // infinite or ponder search would wait for stop forever, so it is stopped; a GUI sticking to the
+    // protocol has already done that.
+    private void awaitSearch() {
+        if (searching && waitForStop) stopSearch();
+        synchronized (searchLock) {
+            while (searching) {
+                try {
+                    searchLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void sendInfo(SearchStats stats) {
+        long elapsed = stats.getElapsedMillis();
+        long nodes = minimax.getNodes();
+        long nps = elapsed > 0 ? nodes * 1000 / elapsed : 0;
+        send("info depth " + stats.getDepth() + " score " + formatScore(stats.getScore()) + " nodes " + nodes
+            + " nps " + nps + " tbhits " + stats.getTablebaseHits() + " time " + elapsed
+            + " pv " + stats.getPrincipalVariationString());
+    }
+
+    private void sendBestMove(Move best) {
+        if (best == null) {
+            send("bestmove 0000"); // Mate or stalemate: no move to play
+            return;
+        }
+        int move = best.getEncoded();
+        SearchStats stats = minimax.getLastSearchStats();
+        int[] line = stats != null ? stats.getPrincipalVariation() : new int[0];
+        if (line.length >= 2 && line[0] == move) {
+            send("bestmove " + Move.toString(move) + " ponder " + Move.toString(line[1]));
+        } else {
+            send("bestmove " + Move.toString(move));
+        }
+    }
+
+    // Centipawns, or moves to mate with a minus sign when the engine is being mated
+    private static String formatScore(int score) {
+        if (Math.abs(score) > Minimax.MATE_BOUND) {
+            int moves = (Minimax.MATE - Math.abs(score) + 1) / 2;
+            return "mate " + (score > 0 ? moves : -moves);
+        }
+        if (Math.abs(score) > Minimax.TABLEBASE_BOUND) {
+            // A tablebase win has no mate distance; it goes out as a large but believable advantage,
+            // less the plies to the probed position, instead of the internal score
+            int plies = Minimax.TABLEBASE_WIN - Math.abs(score);
+            return "cp " + (score > 0 ? TABLEBASE_WIN_CP - plies : -(TABLEBASE_WIN_CP - plies));
+        }
+        return "cp " + score;
+    }
+
+    // Called from the input and the search threads; a line must never be split by another
+    private static synchronized void send(String line) {
+        System.out.println(line);
+        System.out.flush();
+    }
+}
@@ -0,0 +1,36 @@
+// Random keys for Zobrist hashing. A position's key is the XOR of the keys of everything on it,
+// so ChessBoard can update it incrementally as pieces move and rights change.
+public final class Zobrist {
+    public static final long[][] PIECE_SQUARE = new long[12][64];
+    public static final long[] CASTLING = new long[16];
+    public static final long[] EN_PASSANT_FILE = new long[8];
+    public static final long SIDE_TO_MOVE;
+
+    private static long seed = 0x9E3779B97F4A7C15L;
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECE_SQUARE[piece][square] = random();
+            }
+        }
+        for (int rights = 0; rights < 16; rights++) {
+            CASTLING[rights] = random();
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILE[file] = random();
+        }
+        SIDE_TO_MOVE = random();
+    }
+
+    private Zobrist() {
+    }
+
+    // splitmix64, seeded so keys are the same in every run
+    private static long random() {
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}